@@ -0,0 +1,54 @@
+#!/usr/bin/env bash
+# Load-test comparison : platform threads (Tomcat pool of 200) vs virtual threads (profile virtual-threads).
+# The same jar is started twice against the same database, and the same endpoints are hit with `hey`
+# at high concurrency. Results (one hey report per run) are written to target/load-test/.
+#
+# usage : scripts/load-test/virtual-vs-platform.sh [concurrency] [requests]
+# needs : JDK 21 (virtual threads), hey (https://github.com/rakyll/hey), a reachable MongoDB
+#         (MONGODB_URI, default mongodb://localhost:27017/test) with some persons in it.
+# Admission control is off for both runs : at this concurrency it would answer 429 / 503 in both modes,
+# and the comparison is about the threads, not the bulkheads.
+set -euo pipefail
+
+CONCURRENCY=${1:-2000}
+REQUESTS=${2:-100000}
+PORT=${PORT:-8080}
+MONGODB_URI=${MONGODB_URI:-mongodb://localhost:27017/test}
+ENDPOINTS=${ENDPOINTS:-"/api/v1/person/search?minAge=20&maxAge=40&size=20 /api/v1/person/search?city=New%20York /api/v1/person/getPopulationByCity"}
+
+cd "$(dirname "$0")/../.."
+command -v hey >/dev/null || { echo "hey is required (go install github.com/rakyll/hey@latest)"; exit 1; }
+sh ./mvnw -B -q -DskipTests package
+JAR=$(ls target/*.jar | grep -v original | head -1)
+OUT=target/load-test
+mkdir -p "$OUT"
+
+run() {
+    local mode=$1 profiles=$2
+    java -jar "$JAR" --server.port="$PORT" --spring.data.mongodb.uri="$MONGODB_URI" \
+        --app.admission.enabled=false --spring.profiles.active="$profiles" > "$OUT/$mode-app.log" 2>&1 &
+    local pid=$!
+    trap "kill $pid 2>/dev/null || true" EXIT
+    until curl -sf -o /dev/null "http://localhost:$PORT/api/v1/person/search?size=1"; do
+        kill -0 $pid 2>/dev/null || { echo "$mode : application did not start, see $OUT/$mode-app.log"; exit 1; }
+        sleep 1
+    done
+
+    for endpoint in $ENDPOINTS; do
+        local name
+        name=$(echo "$endpoint" | sed 's|/api/v1/person/||; s|[^a-zA-Z0-9]|_|g')
+        # warm up (JIT, connection pool) before the measured run
+        hey -n 2000 -c 50 "http://localhost:$PORT$endpoint" > /dev/null
+        echo "== $mode $endpoint (c=$CONCURRENCY n=$REQUESTS)"
+        hey -n "$REQUESTS" -c "$CONCURRENCY" "http://localhost:$PORT$endpoint" | tee "$OUT/$mode-$name.txt" \
+            | grep -E "Requests/sec|Average|99%|\[[0-9]+\]"
+    done
+
+    kill $pid
+    wait $pid 2>/dev/null || true
+    trap - EXIT
+}
+
+run platform default
+run virtual virtual-threads
+echo "Reports are in $OUT"
@@ -0,0 +1,73 @@
+#!/usr/bin/env bash
+# Startup benchmark : how long until a new instance is ready, and how much memory it holds once it is.
+# Three ways to start the same build are compared, each started RUNS times :
+#   default  : java -jar, default profile (eager beans, springdoc building the OpenAPI document at runtime)
+#   prod     : extracted jar, profile prod (lazy beans, static openapi.json, no index provisioning)
+#   prod-cds : the same with an AppCDS archive (class metadata of a training run, mapped instead of parsed)
+# Ready = /actuator/health/readiness answers 200. Results are written to target/startup/results.txt.
+#
+# usage : scripts/startup/startup-benchmark.sh [runs]
+# needs : JDK 17+, a reachable MongoDB (MONGODB_URI, default mongodb://localhost:27017/test).
+#         APP_ARGS adds arguments to every run, e.g. APP_ARGS="--app.city-stats.enabled=false".
+# Native image : mvn -Pnative native:compile (native profile of spring-boot-starter-parent, needs GraalVM) builds
+#         target/proj. Spring AOT fixes the profiles and @Conditional beans at build time, so build it with
+#         -Dspring.profiles.active=prod and start it with the same arguments as below to compare.
+set -euo pipefail
+
+RUNS=${1:-5}
+PORT=${PORT:-8080}
+MONGODB_URI=${MONGODB_URI:-mongodb://localhost:27017/test}
+APP_ARGS=${APP_ARGS:-}
+
+cd "$(dirname "$0")/../.."
+sh ./mvnw -B -q -DskipTests package
+JAR=$(ls target/*.jar | grep -v original | head -1)
+OUT=target/startup
+rm -rf "$OUT" && mkdir -p "$OUT"
+
+# The archive only covers classes loaded from jars on the class path, not from the nested jars of a fat jar
+java -Djarmode=tools -jar "$JAR" extract --destination "$OUT/app" > /dev/null
+APP_JAR="$OUT/app/$(basename "$JAR")"
+
+# Training run : the context is refreshed then the JVM exits and writes the archive (profile prod, as started later)
+java -XX:ArchiveClassesAtExit="$OUT/app.jsa" -Dspring.context.exit=onRefresh -jar "$APP_JAR" \
+    --spring.profiles.active=prod --spring.data.mongodb.uri="$MONGODB_URI" $APP_ARGS > "$OUT/cds-training.log" 2>&1
+
+# prints "<ms until ready> <RSS in MB once ready> <Started in .. seconds>"
+start_once() {
+    local log=$1; shift
+    local begin pid ready rss
+    begin=$(date +%s%N)
+    # probes are on in prod, the default profile only has them on Kubernetes
+    java "$@" --server.port="$PORT" --spring.data.mongodb.uri="$MONGODB_URI" \
+        --management.endpoint.health.probes.enabled=true $APP_ARGS > "$log" 2>&1 &
+    pid=$!
+    until curl -sf -o /dev/null "http://localhost:$PORT/actuator/health/readiness"; do
+        kill -0 $pid 2>/dev/null || { echo "application did not start, see $log" >&2; exit 1; }
+        sleep 0.05
+    done
+    ready=$(( ($(date +%s%N) - begin) / 1000000 ))
+    rss=$(( $(awk '/VmRSS/ {print $2}' /proc/$pid/status) / 1024 ))
+    kill $pid && wait $pid 2>/dev/null || true
+    echo "$ready $rss $(grep -o 'Started .* in [0-9.]* seconds' "$log" | grep -o '[0-9.]* seconds' || echo '?')"
+}
+
+measure() {
+    local mode=$1; shift
+    local total_ready=0 total_rss=0 result ready rss
+    for run in $(seq 1 "$RUNS"); do
+        result=$(start_once "$OUT/$mode-$run.log" "$@")
+        read -r ready rss _ <<< "$result"
+        total_ready=$((total_ready + ready))
+        total_rss=$((total_rss + rss))
+        echo "$mode run $run : ready in ${ready} ms, RSS ${rss} MB, $(cut -d' ' -f3- <<< "$result")"
+    done
+    echo "== $mode : ready in $((total_ready / RUNS)) ms, RSS $((total_rss / RUNS)) MB (average of $RUNS runs)"
+}
+
+{
+    echo "Startup benchmark $(date -u +%FT%TZ), $(java -version 2>&1 | head -1), $RUNS runs each"
+    measure default -jar "$JAR"
+    measure prod -jar "$APP_JAR" --spring.profiles.active=prod
+    measure prod-cds -XX:SharedArchiveFile="$OUT/app.jsa" -Xlog:cds=off -jar "$APP_JAR" --spring.profiles.active=prod
+} | tee "$OUT/results.txt"
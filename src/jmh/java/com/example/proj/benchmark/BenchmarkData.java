@@ -0,0 +1,63 @@
+package com.example.proj.benchmark;
+
+import com.example.proj.model.Address;
+import com.example.proj.model.Person;
+import com.example.proj.model.Photo;
+import org.bson.BsonBinarySubType;
+import org.bson.types.Binary;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+// Sample documents shared by the benchmarks, built the same way on every run so results can be compared
+final class BenchmarkData {
+
+    private BenchmarkData() {
+    }
+
+    static Person person(int addressCount, boolean withNulls) {
+        List<Address> addresses = new ArrayList<>();
+        for (int i = 0; i < addressCount; i++) {
+            addresses.add(new Address("Street " + i, withNulls ? null : "Apartment " + i, "City " + (i % 5)));
+        }
+        Person person = new Person();
+        person.setPersonId(new ObjectId().toHexString());
+        person.setFirstName("John");
+        person.setFirstNameLower("john");
+        person.setLastName(withNulls ? null : "Doe");
+        person.setAge(42);
+        person.setHobbies(withNulls ? null : Arrays.asList("chess", "hiking", "photography"));
+        person.setAddresses(addresses);
+        return person;
+    }
+
+    static Photo photoMetadata() {
+        Photo photo = new Photo();
+        photo.setId(new ObjectId().toHexString());
+        photo.setTitle("holidays");
+        photo.setContentId(new ObjectId().toHexString());
+        photo.setContentType("image/jpeg");
+        photo.setSize(1_048_576L);
+        photo.setChecksum("9f86d081884c7d659a2feaa0c55ad015a3bf4f1b2b0b822cd15d6c15b0f00a08");
+        photo.setUploadedAt(new Date(0));
+        return photo;
+    }
+
+    static Photo legacyPhoto(byte[] content) {
+        Photo photo = new Photo();
+        photo.setId(new ObjectId().toHexString());
+        photo.setTitle("holidays");
+        photo.setPhoto(new Binary(BsonBinarySubType.BINARY, content));
+        return photo;
+    }
+
+    static byte[] content(int size) {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        return bytes;
+    }
+}
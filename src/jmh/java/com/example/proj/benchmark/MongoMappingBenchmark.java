@@ -0,0 +1,76 @@
+package com.example.proj.benchmark;
+
+import com.example.proj.model.Person;
+import com.example.proj.model.Photo;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NOTE : Person / Photo <-> BSON Document mapping through MappingMongoConverter
+ * This is the work MongoTemplate and the repositories do on every document read or written.
+ * The converter is set up without a database (no DBRefs are used), so nothing but the mapping is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MongoMappingBenchmark {
+
+    @Param({"1", "10"})
+    int addressCount;
+
+    private MappingMongoConverter converter;
+    private Person person;
+    private Document personDocument;
+    private Photo photo;
+    private Document photoDocument;
+
+    @Setup
+    public void setUp() {
+        MongoCustomConversions conversions = new MongoCustomConversions(Collections.emptyList());
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.setSimpleTypeHolder(conversions.getSimpleTypeHolder());
+        mappingContext.afterPropertiesSet();
+        converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.setCustomConversions(conversions);
+        converter.afterPropertiesSet();
+
+        person = BenchmarkData.person(addressCount, false);
+        personDocument = writePerson();
+        photo = BenchmarkData.photoMetadata();
+        photoDocument = writePhoto();
+    }
+
+    @Benchmark
+    public Document writePerson() {
+        Document document = new Document();
+        converter.write(person, document);
+        return document;
+    }
+
+    @Benchmark
+    public Person readPerson() {
+        return converter.read(Person.class, personDocument);
+    }
+
+    @Benchmark
+    public Document writePhoto() {
+        Document document = new Document();
+        converter.write(photo, document);
+        return document;
+    }
+
+    @Benchmark
+    public Photo readPhoto() {
+        return converter.read(Photo.class, photoDocument);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.proj.benchmark;
+
+import com.example.proj.model.Person;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NOTE : Jackson (de)serialization of Person, as done by every person endpoint
+ * The ObjectMapper is built like Spring Boot builds it. `withNulls` leaves optional fields empty,
+ * so the cost of @JsonInclude(NON_NULL) skipping them shows up.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersonJsonBenchmark {
+
+    @Param({"1", "10"})
+    int addressCount;
+
+    @Param({"false", "true"})
+    boolean withNulls;
+
+    private ObjectMapper objectMapper;
+    private Person person;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        person = BenchmarkData.person(addressCount, withNulls);
+        json = objectMapper.writeValueAsBytes(person);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws IOException {
+        return objectMapper.writeValueAsBytes(person);
+    }
+
+    @Benchmark
+    public Person deserialize() throws IOException {
+        return objectMapper.readValue(json, Person.class);
+    }
+}
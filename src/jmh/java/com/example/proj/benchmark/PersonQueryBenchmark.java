@@ -0,0 +1,58 @@
+package com.example.proj.benchmark;
+
+import com.example.proj.model.Person;
+import com.example.proj.service.person.PersonSearchCriteria;
+import org.bson.Document;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NOTE : Query building of searchPerson
+ * buildFilter is what PersonSearchCriteria produces, mapFilter adds the QueryMapper pass MongoTemplate runs
+ * before sending it (field names -> document keys, values -> BSON types). No query is executed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersonQueryBenchmark {
+
+    private QueryMapper queryMapper;
+    private MongoPersistentEntity<?> personEntity;
+
+    @Setup
+    public void setUp() {
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.afterPropertiesSet();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.afterPropertiesSet();
+        queryMapper = new QueryMapper(converter);
+        personEntity = mappingContext.getRequiredPersistentEntity(Person.class);
+    }
+
+    @Benchmark
+    public Document buildFilter() {
+        return filter();
+    }
+
+    @Benchmark
+    public Document mapFilter() {
+        return queryMapper.getMappedObject(filter(), personEntity);
+    }
+
+    private static Document filter() {
+        List<Criteria> criteria = PersonSearchCriteria.of(Optional.of("Jo.n"), Optional.of(20), Optional.of(40), Optional.of("New York"));
+        return PersonSearchCriteria.and(criteria).getCriteriaObject();
+    }
+}
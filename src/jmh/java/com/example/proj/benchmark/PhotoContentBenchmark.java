@@ -0,0 +1,73 @@
+package com.example.proj.benchmark;
+
+import com.example.proj.model.Photo;
+import com.example.proj.service.photo.ContentChecksum;
+import org.bson.BsonBinarySubType;
+import org.bson.types.Binary;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NOTE : Photo content paths of PhotoServiceImpl, without the database
+ *  - legacyUpload   : the old createPhoto, the whole upload copied into a Binary (image.getBytes())
+ *  - legacyDownload : Binary of a legacy photo -> ByteArrayResource -> response stream
+ *  - streamedUpload : the GridFS upload path, one pass through a DigestInputStream in 255KB chunks
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PhotoContentBenchmark {
+
+    private static final int GRIDFS_CHUNK_SIZE = 255 * 1024;
+
+    @Param({"65536", "1048576", "8388608"})
+    int size;
+
+    private byte[] content;
+    private Photo legacyPhoto;
+
+    @Setup
+    public void setUp() {
+        content = BenchmarkData.content(size);
+        legacyPhoto = BenchmarkData.legacyPhoto(content);
+    }
+
+    @Benchmark
+    public Binary legacyUpload() {
+        // MultipartFile.getBytes() hands out a copy, then the Binary holds it until the document is encoded
+        return new Binary(BsonBinarySubType.BINARY, content.clone());
+    }
+
+    @Benchmark
+    public long legacyDownload() throws IOException {
+        ByteArrayResource resource = new ByteArrayResource(legacyPhoto.getPhoto().getData());
+        try (InputStream in = resource.getInputStream()) {
+            return in.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    @Benchmark
+    public void streamedUpload(Blackhole blackhole) throws IOException {
+        MessageDigest digest = ContentChecksum.newDigest();
+        byte[] chunk = new byte[GRIDFS_CHUNK_SIZE];
+        try (InputStream in = new DigestInputStream(new ByteArrayInputStream(content), digest)) {
+            int read;
+            while ((read = in.readNBytes(chunk, 0, chunk.length)) > 0) {
+                blackhole.consume(read);
+            }
+        }
+        blackhole.consume(ContentChecksum.toHex(digest.digest()));
+    }
+}
@@ -2,10 +2,10 @@ package com.example.proj;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
-import springfox.documentation.swagger2.annotations.EnableSwagger2;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
-@EnableSwagger2
+@EnableScheduling
 public class JavaProj003Application {
 
     public static void main(String[] args) {
@@ -0,0 +1,133 @@
+package com.example.proj.cache;
+
+import com.example.proj.model.Person;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * NOTE : Read-through cache in front of PersonRepository
+ * Tier 1 : Caffeine (in-process, bounded by size and TTL), one cache keyed by id and one keyed by firstName.
+ * Tier 2 : optional shared cache (see SharedCacheStandIn), checked before going to MongoDB.
+ * Only found persons are cached, a "Person Not Found" always goes to the database.
+ */
+@Component
+public class PersonCache {
+
+    private static final String ID_KEY = "person:id:";
+    private static final String FIRST_NAME_KEY = "person:firstName:";
+
+    private final Cache<String, Person> byId;
+    private final Cache<String, Person> byFirstName;
+    private final SharedCacheStandIn<Person> sharedTier;
+    // Number of times the loader really went to MongoDB, to measure how much load the cache removes
+    private final AtomicLong databaseLoads = new AtomicLong();
+
+    public PersonCache(@Value("${app.cache.person.max-size:10000}") long maxSize,
+                       @Value("${app.cache.person.ttl:5m}") Duration ttl,
+                       @Value("${app.cache.person.shared-tier.enabled:false}") boolean sharedTierEnabled,
+                       @Value("${app.cache.person.shared-tier.ttl:30m}") Duration sharedTierTtl) {
+        this.byId = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).recordStats().build();
+        this.byFirstName = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).recordStats().build();
+        this.sharedTier = sharedTierEnabled ? new SharedCacheStandIn<>(sharedTierTtl) : null;
+    }
+
+    public Optional<Person> getById(String personId, Function<String, Optional<Person>> loader) {
+        return Optional.ofNullable(byId.get(personId, key -> load(ID_KEY + key, key, loader)));
+    }
+
+    public Optional<Person> getByFirstName(String firstName, Function<String, Optional<Person>> loader) {
+        return Optional.ofNullable(byFirstName.get(firstName, key -> load(FIRST_NAME_KEY + key, key, loader)));
+    }
+
+    // Called after a write that may rename the person : `previous` is the stored document before the write,
+    // its firstName is dropped too (the tier 1 id entry below only knows it when the id happens to be cached)
+    public void evict(Person previous, Person person) {
+        if (previous != null && previous.getFirstName() != null) {
+            evictFirstName(previous.getFirstName());
+        }
+        evict(person);
+    }
+
+    // Called after a write : drops the person under its id, its current firstName and the firstName it had before
+    public void evict(Person person) {
+        if (person.getPersonId() != null) {
+            Person previous = byId.getIfPresent(person.getPersonId());
+            if (previous != null && previous.getFirstName() != null) {
+                evictFirstName(previous.getFirstName());
+            }
+            byId.invalidate(person.getPersonId());
+            if (sharedTier != null) {
+                sharedTier.evict(ID_KEY + person.getPersonId());
+            }
+        }
+        if (person.getFirstName() != null) {
+            evictFirstName(person.getFirstName());
+        }
+    }
+
+    public void evictAll() {
+        byId.invalidateAll();
+        byFirstName.invalidateAll();
+        if (sharedTier != null) {
+            sharedTier.clear();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("byId", toMap(byId.stats(), byId.estimatedSize()));
+        stats.put("byFirstName", toMap(byFirstName.stats(), byFirstName.estimatedSize()));
+        if (sharedTier != null) {
+            Map<String, Object> shared = new LinkedHashMap<>();
+            shared.put("hits", sharedTier.getHits());
+            shared.put("misses", sharedTier.getMisses());
+            shared.put("size", sharedTier.getSize());
+            stats.put("sharedTier", shared);
+        }
+        stats.put("databaseLoads", databaseLoads.get());
+        return stats;
+    }
+
+    private void evictFirstName(String firstName) {
+        byFirstName.invalidate(firstName);
+        if (sharedTier != null) {
+            sharedTier.evict(FIRST_NAME_KEY + firstName);
+        }
+    }
+
+    // Returning null tells Caffeine not to cache anything for that key
+    private Person load(String sharedKey, String key, Function<String, Optional<Person>> loader) {
+        if (sharedTier != null) {
+            Person shared = sharedTier.get(sharedKey);
+            if (shared != null) {
+                return shared;
+            }
+        }
+        databaseLoads.incrementAndGet();
+        Person loaded = loader.apply(key).orElse(null);
+        if (loaded != null && sharedTier != null) {
+            sharedTier.put(sharedKey, loaded);
+        }
+        return loaded;
+    }
+
+    private static Map<String, Object> toMap(CacheStats cacheStats, long size) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("hits", cacheStats.hitCount());
+        map.put("misses", cacheStats.missCount());
+        map.put("hitRate", cacheStats.hitRate());
+        map.put("evictions", cacheStats.evictionCount());
+        map.put("size", size);
+        return map;
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.proj.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * NOTE : Single-flight (request coalescing)
+ * Concurrent calls with the same key share one execution : the first caller (leader) runs the call on its own
+ * thread, the callers arriving while it runs (followers) wait for its result or its exception.
+ * Nothing is kept once the call returns, so unlike a cache a result is never older than the read itself.
+ * A follower waits at most `timeout`, then gets a RejectedExecutionException (503) instead of piling up
+ * behind a stuck query ; the leader itself is never cut short.
+ * Results are shared between callers : they must be treated as read-only.
+ * Metrics (tag name) : singleflight.calls{role=leader|follower}, singleflight.timeouts.
+ * Fan-in = (leader + follower) / leader, the number of callers served by one database call.
+ */
+public class SingleFlight {
+
+    private final String name;
+    private final long timeoutMillis;
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final Counter leaders;
+    private final Counter followers;
+    private final Counter timeouts;
+
+    public SingleFlight(String name, long timeoutMillis, MeterRegistry registry) {
+        this.name = name;
+        this.timeoutMillis = timeoutMillis;
+        this.leaders = Counter.builder("singleflight.calls").tag("name", name).tag("role", "leader")
+                .description("Calls, leader : ran the operation, follower : shared its result").register(registry);
+        this.followers = Counter.builder("singleflight.calls").tag("name", name).tag("role", "follower")
+                .description("Calls, leader : ran the operation, follower : shared its result").register(registry);
+        this.timeouts = Counter.builder("singleflight.timeouts").tag("name", name)
+                .description("Followers that stopped waiting").register(registry);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> call) {
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, flight);
+        if (running == null) {
+            leaders.increment();
+            try {
+                T result = call.get();
+                flight.complete(result);
+                return result;
+            } catch (RuntimeException | Error e) {
+                flight.completeExceptionally(e);
+                throw e;
+            } finally {
+                // Removed once done : the next call for this key reads again
+                inFlight.remove(key, flight);
+            }
+        }
+
+        followers.increment();
+        try {
+            return (T) running.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw new RejectedExecutionException("The same " + name + " read is still running, try again later");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted");
+        } catch (ExecutionException e) {
+            // The leader's exception, e.g. "Person Not Found"
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        double leaderCount = leaders.count();
+        map.put("leaders", (long) leaderCount);
+        map.put("followers", (long) followers.count());
+        map.put("timeouts", (long) timeouts.count());
+        map.put("fanIn", leaderCount == 0 ? 0 : (leaderCount + followers.count()) / leaderCount);
+        map.put("inFlight", inFlight.size());
+        return map;
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.proj.config.admission;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * NOTE : Adaptive concurrency limit (AIMD)
+ * At most `limit` requests of a group run at the same time, up to `queueSize` more wait at most `maxWait` for a slot.
+ * The limit follows the latency observed :
+ *  - additive increase : a request faster than `latencyThreshold` while the limit is really used (in flight >= limit / 2)
+ *    adds 1 / limit, so about +1 per limit requests
+ *  - multiplicative decrease : a request slower than `latencyThreshold`, or failed (5xx), multiplies the limit by 0.9,
+ *    at most once per latencyThreshold (the requests of one slow period count once, not one by one)
+ * between `minLimit` and `maxLimit`. When MongoDB slows down the limit shrinks and the extra requests are turned away
+ * right away, instead of all of them waiting on the connection pool and timing out together.
+ * Metrics (tag group) : admission.limit, admission.in_flight, admission.waiting, admission.rejected{reason=queue_full|timeout}.
+ */
+public class AdaptiveLimiter {
+
+    private static final double BACKOFF = 0.9;
+    private static final double LATENCY_SMOOTHING = 0.2;
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int queueSize;
+    private final long maxWaitNanos;
+    private final long latencyThresholdNanos;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private final Counter rejectedQueueFull;
+    private final Counter rejectedTimeout;
+
+    private double limit;
+    private int inFlight;
+    private int waiting;
+    private long lastDecreaseNanos;
+    private double averageLatencyNanos;
+
+    public AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit, int queueSize,
+                           Duration maxWait, Duration latencyThreshold, MeterRegistry registry) {
+        if (minLimit < 1 || minLimit > maxLimit) {
+            throw new IllegalArgumentException("Admission " + name + " : needs 1 <= min-limit <= max-limit");
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.queueSize = queueSize;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.lastDecreaseNanos = System.nanoTime() - latencyThresholdNanos;
+
+        Gauge.builder("admission.limit", this, AdaptiveLimiter::getLimit).tag("group", name)
+                .description("Concurrent requests allowed").register(registry);
+        Gauge.builder("admission.in_flight", this, AdaptiveLimiter::getInFlight).tag("group", name)
+                .description("Requests running").register(registry);
+        Gauge.builder("admission.waiting", this, AdaptiveLimiter::getWaiting).tag("group", name)
+                .description("Requests waiting for a slot").register(registry);
+        this.rejectedQueueFull = Counter.builder("admission.rejected").tag("group", name).tag("reason", "queue_full")
+                .description("Requests turned away").register(registry);
+        this.rejectedTimeout = Counter.builder("admission.rejected").tag("group", name).tag("reason", "timeout")
+                .description("Requests turned away").register(registry);
+    }
+
+    // Takes a slot, or throws AdmissionRejectedException. Every acquire() is followed by one release()
+    public void acquire() {
+        lock.lock();
+        try {
+            // Nobody waiting : no newcomer gets ahead of a queued request
+            if (waiting == 0 && inFlight < (int) limit) {
+                inFlight++;
+                return;
+            }
+            if (waiting >= queueSize) {
+                rejectedQueueFull.increment();
+                throw new AdmissionRejectedException("Too many " + name + " requests, try again later", true, retryAfterSeconds());
+            }
+            waiting++;
+            try {
+                long remaining = maxWaitNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        rejectedTimeout.increment();
+                        throw new AdmissionRejectedException("The " + name + " requests are slow, try again later", false, retryAfterSeconds());
+                    }
+                    remaining = released.awaitNanos(remaining);
+                }
+                inFlight++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejectedTimeout.increment();
+                throw new AdmissionRejectedException("Interrupted while waiting for a " + name + " slot", false, retryAfterSeconds());
+            } finally {
+                waiting--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release(long latencyNanos, boolean failed) {
+        lock.lock();
+        try {
+            boolean busy = inFlight * 2 >= (int) limit;
+            inFlight--;
+            averageLatencyNanos = averageLatencyNanos == 0 ? latencyNanos
+                    : averageLatencyNanos + LATENCY_SMOOTHING * (latencyNanos - averageLatencyNanos);
+            long now = System.nanoTime();
+            if (failed || latencyNanos > latencyThresholdNanos) {
+                if (now - lastDecreaseNanos >= latencyThresholdNanos) {
+                    limit = Math.max(minLimit, limit * BACKOFF);
+                    lastDecreaseNanos = now;
+                }
+            } else if (busy) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Roughly when the requests ahead are done : average latency x (waiting + 1) / limit, at least 1 second
+    private long retryAfterSeconds() {
+        double seconds = averageLatencyNanos * (waiting + 1) / limit / TimeUnit.SECONDS.toNanos(1);
+        return Math.max(1, (long) Math.ceil(seconds));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public double getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getWaiting() {
+        lock.lock();
+        try {
+            return waiting;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Map<String, Object> stats() {
+        lock.lock();
+        try {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("limit", (int) limit);
+            stats.put("minLimit", minLimit);
+            stats.put("maxLimit", maxLimit);
+            stats.put("inFlight", inFlight);
+            stats.put("waiting", waiting);
+            stats.put("averageLatencyMillis", Math.round(averageLatencyNanos / 1_000_000));
+            stats.put("rejectedQueueFull", (long) rejectedQueueFull.count());
+            stats.put("rejectedTimeout", (long) rejectedTimeout.count());
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
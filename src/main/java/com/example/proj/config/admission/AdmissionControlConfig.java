@@ -0,0 +1,55 @@
+package com.example.proj.config.admission;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+
+// Admission control of the servlet stack (see AdmissionControlInterceptor), one limiter per app.admission.<group>.*
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = "app.admission.enabled", havingValue = "true", matchIfMissing = true)
+public class AdmissionControlConfig implements WebMvcConfigurer {
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+
+    public AdmissionControlConfig(Environment environment, MeterRegistry meterRegistry) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Bean
+    public AdmissionControlInterceptor admissionControlInterceptor() {
+        return new AdmissionControlInterceptor(
+                limiter("person", 50, 10, 200, 100, Duration.ofMillis(100), Duration.ofMillis(250)),
+                limiter("person-heavy", 4, 1, 16, 8, Duration.ofSeconds(2), Duration.ofSeconds(2)),
+                limiter("photo", 8, 2, 32, 16, Duration.ofSeconds(1), Duration.ofSeconds(5)));
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(admissionControlInterceptor())
+                .addPathPatterns("/api/v1/person/**", "/photo/**")
+                .excludePathPatterns("/api/v1/person/events");
+    }
+
+    private AdaptiveLimiter limiter(String group, int initialLimit, int minLimit, int maxLimit, int queueSize,
+                                    Duration maxWait, Duration latencyThreshold) {
+        String prefix = "app.admission." + group + ".";
+        return new AdaptiveLimiter(group,
+                environment.getProperty(prefix + "initial-limit", Integer.class, initialLimit),
+                environment.getProperty(prefix + "min-limit", Integer.class, minLimit),
+                environment.getProperty(prefix + "max-limit", Integer.class, maxLimit),
+                environment.getProperty(prefix + "queue-size", Integer.class, queueSize),
+                environment.getProperty(prefix + "max-wait", Duration.class, maxWait),
+                environment.getProperty(prefix + "latency-threshold", Duration.class, latencyThreshold),
+                meterRegistry);
+    }
+}
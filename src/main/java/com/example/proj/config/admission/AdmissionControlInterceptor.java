@@ -0,0 +1,115 @@
+package com.example.proj.config.admission;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * NOTE : Admission control (bulkheads)
+ * Every person and photo request takes a slot of one of three AdaptiveLimiters before reaching its controller :
+ *  - person-heavy : reports, the full list / stream, unfiltered searches, bulk ingest, bulk delete
+ *                   and the city_stats rebuild
+ *  - person       : the other person calls, the cheap lookups (getByFirstName, get by id ..)
+ *  - photo        : uploads, downloads and the other photo calls
+ * A burst of heavy calls fills its own small bulkhead and is turned away there, the cheap lookups keep their slots
+ * and their latency. A request turned away gets 429 when the queue is full (too many requests), 503 when it
+ * waited max-wait for a slot (the server is slow), both with Retry-After.
+ * Streamed responses (NDJSON, StreamingResponseBody) keep their slot until the async dispatch completes,
+ * the event feed (/events) is not limited : its connections stay open for minutes, see app.person.feed.max-subscribers.
+ */
+public class AdmissionControlInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String PERMIT = AdmissionControlInterceptor.class.getName() + ".permit";
+    private static final String PERSON = "/api/v1/person/";
+    private static final Set<String> HEAVY_PERSON_PATHS = Set.of("getOlderPersonIn", "getPopulationByCity",
+            "get", "stream", "bulk", "bulkDelete", "cityStats/rebuild");
+    private static final Set<String> SEARCH_PATHS = Set.of("search", "search/keyset");
+    private static final Set<String> SEARCH_FILTERS = Set.of("firstName", "minAge", "maxAge", "city");
+
+    private final AdaptiveLimiter person;
+    private final AdaptiveLimiter personHeavy;
+    private final AdaptiveLimiter photo;
+
+    public AdmissionControlInterceptor(AdaptiveLimiter person, AdaptiveLimiter personHeavy, AdaptiveLimiter photo) {
+        this.person = person;
+        this.personHeavy = personHeavy;
+        this.photo = photo;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            // The end of a streamed response : the slot taken by the first dispatch is still held
+            return true;
+        }
+        AdaptiveLimiter limiter = limiterFor(request);
+        try {
+            limiter.acquire();
+        } catch (AdmissionRejectedException e) {
+            response.setStatus(e.isQueueFull() ? HttpStatus.TOO_MANY_REQUESTS.value() : HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write(e.getMessage());
+            return false;
+        }
+        request.setAttribute(PERMIT, new Permit(limiter, System.nanoTime()));
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // The response goes on on another thread : the slot is released by afterCompletion of the async dispatch
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Permit permit = (Permit) request.getAttribute(PERMIT);
+        if (permit != null) {
+            request.removeAttribute(PERMIT);
+            permit.limiter.release(System.nanoTime() - permit.startNanos, ex != null || response.getStatus() >= 500);
+        }
+    }
+
+    AdaptiveLimiter limiterFor(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!path.startsWith(PERSON)) {
+            return photo;
+        }
+        String operation = path.substring(PERSON.length());
+        if (HEAVY_PERSON_PATHS.contains(operation)) {
+            return personHeavy;
+        }
+        if (SEARCH_PATHS.contains(operation) && SEARCH_FILTERS.stream().noneMatch(filter -> request.getParameter(filter) != null)) {
+            // Without a filter the search walks (and counts) the whole collection
+            return personHeavy;
+        }
+        return person;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (AdaptiveLimiter limiter : new AdaptiveLimiter[]{person, personHeavy, photo}) {
+            stats.put(limiter.getName(), limiter.stats());
+        }
+        return stats;
+    }
+
+    private static final class Permit {
+        private final AdaptiveLimiter limiter;
+        private final long startNanos;
+
+        private Permit(AdaptiveLimiter limiter, long startNanos) {
+            this.limiter = limiter;
+            this.startNanos = startNanos;
+        }
+    }
+}
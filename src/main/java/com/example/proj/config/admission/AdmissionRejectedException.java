@@ -0,0 +1,24 @@
+package com.example.proj.config.admission;
+
+import java.util.concurrent.RejectedExecutionException;
+
+// A request the limiter didn't let in : queueFull (429) or it waited maxWait for a slot (503)
+public class AdmissionRejectedException extends RejectedExecutionException {
+
+    private final boolean queueFull;
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(String message, boolean queueFull, long retryAfterSeconds) {
+        super(message);
+        this.queueFull = queueFull;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public boolean isQueueFull() {
+        return queueFull;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
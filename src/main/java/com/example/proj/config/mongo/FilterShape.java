@@ -0,0 +1,50 @@
+package com.example.proj.config.mongo;
+
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * NOTE : Redacted query shape
+ * Keeps the field names and operators of a filter / pipeline and replaces every value with "?",
+ * {age: {$gt: 20, $lt: 40}, "addresses.city": "Paris"} -> {"age": {"$gt": "?", "$lt": "?"}, "addresses.city": "?"}
+ * so two queries that only differ by their values have the same shape, and no personal data ends up in the logs.
+ */
+public final class FilterShape {
+
+    private static final BsonString PLACEHOLDER = new BsonString("?");
+
+    private FilterShape() {
+    }
+
+    public static String of(BsonValue value) {
+        return value == null ? "{}" : redact(value).toString();
+    }
+
+    static BsonValue redact(BsonValue value) {
+        if (value.isDocument()) {
+            BsonDocument shape = new BsonDocument();
+            for (Map.Entry<String, BsonValue> entry : value.asDocument().entrySet()) {
+                shape.put(entry.getKey(), redact(entry.getValue()));
+            }
+            return shape;
+        }
+        if (value.isArray()) {
+            BsonArray values = value.asArray();
+            // $and / $or / pipelines : every element has its own shape. $in [1, 2, 3] : a list of values, one "?" is enough
+            if (values.stream().anyMatch(BsonValue::isDocument)) {
+                BsonArray shape = new BsonArray();
+                for (BsonValue element : values) {
+                    shape.add(redact(element));
+                }
+                return shape;
+            }
+            return new BsonArray(List.of(PLACEHOLDER));
+        }
+        return PLACEHOLDER;
+    }
+}
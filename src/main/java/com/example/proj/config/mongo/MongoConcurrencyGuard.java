@@ -0,0 +1,89 @@
+package com.example.proj.config.mongo;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * NOTE : Semaphore in front of the Mongo connection pool
+ * Every blocking repository call and every MongoTemplate call takes a permit first, there are as many
+ * permits as pooled connections. With virtual threads thousands of requests can reach this point at the
+ * same time : the extra ones park cheaply on the semaphore, and give up after `maxWait` with a
+ * TransientDataAccessResourceException instead of piling up inside the driver.
+ * The permit is reentrant per thread : a repository call going through MongoTemplate only takes one.
+ * GridFsTemplate calls (photo content, variants, job results) are guarded the same way.
+ * A call returning a Stream (mongoTemplate.stream(..), Stream<T> repository methods) keeps its permit, and its
+ * thread keeps counting as inside a Mongo call, until the stream is closed : its cursor is still reading, and the
+ * calls made while iterating don't take a second permit. Such streams must be closed (try-with-resources).
+ */
+@Aspect
+@Component
+@ConditionalOnProperty(name = "app.mongo.guard.enabled", havingValue = "true")
+public class MongoConcurrencyGuard {
+
+    private final Semaphore permits;
+    private final int permitCount;
+    private final long maxWaitMillis;
+    private final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[1]);
+
+    public MongoConcurrencyGuard(@Value("${app.mongo.pool.max-size:100}") int permits,
+                                 @Value("${app.mongo.guard.max-wait:5s}") Duration maxWait) {
+        this.permits = new Semaphore(permits, true);
+        this.permitCount = permits;
+        this.maxWaitMillis = maxWait.toMillis();
+    }
+
+    @Around("this(org.springframework.data.mongodb.repository.MongoRepository) "
+            + "|| target(org.springframework.data.mongodb.core.MongoTemplate) "
+            + "|| target(org.springframework.data.mongodb.gridfs.GridFsTemplate)")
+    public Object guard(ProceedingJoinPoint joinPoint) throws Throwable {
+        int[] calls = depth.get();
+        if (calls[0] > 0) {
+            return proceedNested(joinPoint, calls);
+        }
+        if (!permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS)) {
+            throw new TransientDataAccessResourceException(
+                    "All " + permitCount + " Mongo connections are busy, gave up after " + maxWaitMillis + " ms");
+        }
+        Object result;
+        calls[0]++;
+        try {
+            result = joinPoint.proceed();
+        } catch (Throwable e) {
+            calls[0]--;
+            permits.release();
+            throw e;
+        }
+        if (result instanceof Stream<?> stream) {
+            AtomicBoolean open = new AtomicBoolean(true);
+            return stream.onClose(() -> {
+                if (open.compareAndSet(true, false)) {
+                    calls[0]--;
+                    permits.release();
+                }
+            });
+        }
+        calls[0]--;
+        permits.release();
+        return result;
+    }
+
+    private static Object proceedNested(ProceedingJoinPoint joinPoint, int[] calls) throws Throwable {
+        calls[0]++;
+        try {
+            return joinPoint.proceed();
+        } finally {
+            calls[0]--;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.proj.config.mongo;
+
+import com.example.proj.model.Job;
+import com.example.proj.model.Person;
+import com.example.proj.model.PhotoContent;
+import com.example.proj.model.PhotoVariant;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.StringOperators;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * NOTE : Index provisioning
+ * Every query of PersonRepository and PersonServiceImpl.searchPerson has an index here :
+ *  firstName           -> findByFirstName
+ *  firstNameLower      -> searchPerson by firstName (anchored prefix regex on the lowercase copy)
+ *  age, _id            -> findPersonByAge*, searchPerson by age, keyset search sorted by age
+ *  addresses.city, age -> searchPerson by city, oldest person per city
+ * and on photo_variant :
+ *  photoId, maxWidth, maxHeight, format (unique) -> variant lookup, one stored copy per variant
+ * and on photo_content :
+ *  orphanedAt (sparse) -> garbage collection of content no photo uses anymore
+ * and on jobs :
+ *  activeKey (unique, sparse) -> coalescing of identical submissions, only active jobs have one
+ *  expireAt (TTL)             -> finished jobs are removed by the server once expired
+ * ensureIndex does nothing when the index already exists, so this is safe on every startup.
+ */
+@Component
+@ConditionalOnProperty(name = "app.mongo.indexes.auto-create", havingValue = "true", matchIfMissing = true)
+public class MongoIndexInitializer {
+
+    private static final Logger log = LoggerFactory.getLogger(MongoIndexInitializer.class);
+
+    private final MongoTemplate mongoTemplate;
+
+    public MongoIndexInitializer(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndexes() {
+        IndexOperations personIndexes = mongoTemplate.indexOps(Person.class);
+        personIndexes.ensureIndex(new Index().on("firstName", Sort.Direction.ASC).named("firstName"));
+        personIndexes.ensureIndex(new Index().on("firstNameLower", Sort.Direction.ASC).named("firstNameLower"));
+        personIndexes.ensureIndex(new Index().on("age", Sort.Direction.ASC).on("_id", Sort.Direction.ASC).named("age_id"));
+        personIndexes.ensureIndex(new Index().on("addresses.city", Sort.Direction.ASC).on("age", Sort.Direction.DESC).named("city_age"));
+
+        mongoTemplate.indexOps(PhotoVariant.class).ensureIndex(new Index()
+                .on("photoId", Sort.Direction.ASC).on("maxWidth", Sort.Direction.ASC)
+                .on("maxHeight", Sort.Direction.ASC).on("format", Sort.Direction.ASC)
+                .unique().named("photoId_size_format"));
+        mongoTemplate.indexOps(PhotoContent.class).ensureIndex(new Index()
+                .on("orphanedAt", Sort.Direction.ASC).sparse().named("orphanedAt"));
+        IndexOperations jobIndexes = mongoTemplate.indexOps(Job.class);
+        jobIndexes.ensureIndex(new Index().on("activeKey", Sort.Direction.ASC).unique().sparse().named("activeKey"));
+        jobIndexes.ensureIndex(new Index().on("expireAt", Sort.Direction.ASC).expire(Duration.ZERO).named("expireAt"));
+
+        backfillFirstNameLower();
+        log.info("Person, photo and job indexes are in place");
+    }
+
+    // Persons saved before firstNameLower existed : $toLower is done by the server, nothing is read back
+    private void backfillFirstNameLower() {
+        Query missing = Query.query(Criteria.where("firstName").exists(true).and("firstNameLower").exists(false));
+        AggregationUpdate toLower = AggregationUpdate.update()
+                .set("firstNameLower").toValue(StringOperators.valueOf("firstName").toLower());
+        long updated = mongoTemplate.updateMulti(missing, toLower, Person.class).getModifiedCount();
+        if (updated > 0) {
+            log.info("Filled firstNameLower for {} persons", updated);
+        }
+    }
+}
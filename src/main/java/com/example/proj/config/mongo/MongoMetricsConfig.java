@@ -0,0 +1,26 @@
+package com.example.proj.config.mongo;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * NOTE : Mongo instrumentation
+ * The command timers (mongodb.driver.commands, tagged by command and collection) and the pool gauges
+ * (mongodb.driver.pool.*) are registered by Spring Boot's MongoMetricsAutoConfiguration as soon as
+ * actuator is on the classpath. Only the slow query log is added here, for both the blocking and the reactive client.
+ */
+@Configuration
+public class MongoMetricsConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "app.mongo.slow-query.enabled", havingValue = "true", matchIfMissing = true)
+    public MongoClientSettingsBuilderCustomizer slowQueryLogCustomizer(
+            @Value("${app.mongo.slow-query.threshold:200ms}") Duration threshold) {
+        return settings -> settings.addCommandListener(new SlowQueryCommandListener(threshold.toMillis()));
+    }
+}
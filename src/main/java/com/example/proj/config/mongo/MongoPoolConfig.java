@@ -0,0 +1,32 @@
+package com.example.proj.config.mongo;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NOTE : Mongo connection pool sizing
+ * With platform threads the Tomcat pool (200 threads) bounds how many requests can wait on a connection.
+ * With virtual threads there is no such bound anymore, so the pool is sized explicitly here, and
+ * MongoConcurrencyGuard keeps the number of callers waiting for it in check.
+ */
+@Configuration
+public class MongoPoolConfig {
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer connectionPoolCustomizer(
+            @Value("${app.mongo.pool.max-size:100}") int maxSize,
+            @Value("${app.mongo.pool.min-size:0}") int minSize,
+            @Value("${app.mongo.pool.max-connecting:2}") int maxConnecting,
+            @Value("${app.mongo.pool.max-wait:5s}") Duration maxWait) {
+        return settings -> settings.applyToConnectionPoolSettings(pool -> pool
+                .maxSize(maxSize)
+                .minSize(minSize)
+                .maxConnecting(maxConnecting)
+                .maxWaitTime(maxWait.toMillis(), TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.proj.config.mongo;
+
+import com.mongodb.ReadConcern;
+import com.mongodb.ReadConcernLevel;
+import com.mongodb.ReadPreference;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NOTE : Read routing
+ * Every operation uses the read preference of the connection string (primary) unless it is routed here :
+ *  - analytics / search (reports, searchPerson, the person export) : `analytics.read-preference`, by default
+ *    secondaryPreferred with maxStalenessSeconds, so they stay off the primary that takes the writes,
+ *    but never read from a secondary lagging more than `max-staleness` behind
+ *  - everything else (by id, after a write, city_stats maintenance) : primary, it has to see its own writes
+ * Routing is per operation (Query.withReadPreference / AggregationOptions.readPreference), so there is a single
+ * MongoTemplate and a single connection pool. On a standalone server the read preference is simply ignored.
+ */
+@Component
+public class MongoReadRouting {
+
+    // The driver refuses anything lower (heartbeat frequency + idle write period, at least 90s)
+    private static final Duration MIN_MAX_STALENESS = Duration.ofSeconds(90);
+
+    private final boolean enabled;
+    private final ReadPreference analyticsReadPreference;
+    private final ReadConcern analyticsReadConcern;
+
+    public MongoReadRouting(@Value("${app.mongo.read-routing.enabled:true}") boolean enabled,
+                            @Value("${app.mongo.read-routing.analytics.read-preference:secondaryPreferred}") String readPreference,
+                            @Value("${app.mongo.read-routing.analytics.max-staleness:90s}") Duration maxStaleness,
+                            @Value("${app.mongo.read-routing.analytics.read-concern:local}") String readConcern) {
+        if (maxStaleness.compareTo(MIN_MAX_STALENESS) < 0) {
+            throw new IllegalArgumentException("app.mongo.read-routing.analytics.max-staleness should be at least 90s");
+        }
+        this.enabled = enabled;
+        // primary can't have a max staleness, it is never stale
+        this.analyticsReadPreference = "primary".equals(readPreference)
+                ? ReadPreference.primary()
+                : ReadPreference.valueOf(readPreference, List.of(), maxStaleness.toSeconds(), TimeUnit.SECONDS);
+        this.analyticsReadConcern = new ReadConcern(ReadConcernLevel.fromString(readConcern));
+    }
+
+    public Query analytics(Query query) {
+        return enabled ? query.withReadPreference(analyticsReadPreference).withReadConcern(analyticsReadConcern) : query;
+    }
+
+    public AggregationOptions.Builder analytics(AggregationOptions.Builder options) {
+        return enabled ? options.readPreference(analyticsReadPreference).readConcern(analyticsReadConcern) : options;
+    }
+}
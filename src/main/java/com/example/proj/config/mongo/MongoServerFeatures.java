@@ -0,0 +1,39 @@
+package com.example.proj.config.mongo;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * NOTE : What the connected MongoDB server supports
+ * `app.person.reports.top-n-accumulator` : true / false to force it, auto to ask the server (buildInfo, once).
+ */
+@Component
+public class MongoServerFeatures {
+
+    private final MongoTemplate mongoTemplate;
+    private final String topNAccumulator;
+    private volatile Boolean topNSupported;
+
+    public MongoServerFeatures(MongoTemplate mongoTemplate,
+                               @Value("${app.person.reports.top-n-accumulator:auto}") String topNAccumulator) {
+        this.mongoTemplate = mongoTemplate;
+        this.topNAccumulator = topNAccumulator;
+    }
+
+    // $top / $topN group accumulators exist since MongoDB 5.2
+    public boolean supportsTopN() {
+        if (!"auto".equals(topNAccumulator)) {
+            return Boolean.parseBoolean(topNAccumulator);
+        }
+        if (topNSupported == null) {
+            Document buildInfo = mongoTemplate.executeCommand(new Document("buildInfo", 1));
+            List<Integer> version = buildInfo.getList("versionArray", Integer.class);
+            topNSupported = version.get(0) > 5 || (version.get(0) == 5 && version.get(1) >= 2);
+        }
+        return topNSupported;
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.proj.config.mongo;
+
+import com.example.proj.model.Person;
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertCallback;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+
+// Runs before a Person is converted to a Document (repository save, template insert, bulk insert ..)
+// The reactive repository and ReactiveMongoTemplate use ReactivePersonNormalizationCallback instead
+@Component
+public class PersonNormalizationCallback implements BeforeConvertCallback<Person> {
+
+    @Override
+    public Person onBeforeConvert(Person person, String collection) {
+        return normalize(person);
+    }
+
+    static Person normalize(Person person) {
+        person.setFirstNameLower(person.getFirstName() == null ? null : person.getFirstName().toLowerCase(Locale.ROOT));
+        return person;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.proj.config.mongo;
+
+import com.example.proj.model.Person;
+import org.reactivestreams.Publisher;
+import org.springframework.data.mongodb.core.mapping.event.ReactiveBeforeConvertCallback;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+// Reactive twin of PersonNormalizationCallback : the blocking callbacks are not called by ReactiveMongoTemplate
+@Component
+public class ReactivePersonNormalizationCallback implements ReactiveBeforeConvertCallback<Person> {
+
+    @Override
+    public Publisher<Person> onBeforeConvert(Person person, String collection) {
+        return Mono.fromSupplier(() -> PersonNormalizationCallback.normalize(person));
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.proj.config.mongo;
+
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NOTE : Slow query log
+ * The driver calls this for every command it sends. The command document is only valid during commandStarted,
+ * so the (redacted) shape of the query commands is kept until the command ends, and logged when it took
+ * longer than `threshold`, with the server that ran it (shows where read routing sent it). Durations of all commands are also in the mongodb.driver.commands timer.
+ */
+public class SlowQueryCommandListener implements CommandListener {
+
+    private static final Logger log = LoggerFactory.getLogger(SlowQueryCommandListener.class);
+    private static final Set<String> QUERY_COMMANDS = Set.of(
+            "find", "aggregate", "count", "distinct", "update", "delete", "findAndModify", "getMore");
+
+    private final long thresholdNanos;
+    private final Map<Integer, String> running = new ConcurrentHashMap<>();
+
+    public SlowQueryCommandListener(long thresholdMillis) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        if (QUERY_COMMANDS.contains(event.getCommandName())) {
+            running.put(event.getRequestId(), describe(event.getCommandName(), event.getCommand()));
+        }
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        String query = running.remove(event.getRequestId());
+        if (query != null && event.getElapsedTime(TimeUnit.NANOSECONDS) >= thresholdNanos) {
+            log.warn("Slow Mongo command ({} ms on {}) : {}", event.getElapsedTime(TimeUnit.MILLISECONDS),
+                    event.getConnectionDescription().getServerAddress(), query);
+        }
+    }
+
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        String query = running.remove(event.getRequestId());
+        if (query != null && event.getElapsedTime(TimeUnit.NANOSECONDS) >= thresholdNanos) {
+            log.warn("Slow Mongo command ({} ms on {}, failed : {}) : {}", event.getElapsedTime(TimeUnit.MILLISECONDS),
+                    event.getConnectionDescription().getServerAddress(), event.getThrowable().getMessage(), query);
+        }
+    }
+
+    // "find person filter={...} sort={...}" : the parts that decide which index is used, values redacted
+    static String describe(String commandName, BsonDocument command) {
+        BsonValue target = command.get(commandName);
+        String collection = target != null && target.isString() ? target.asString().getValue() : "";
+        StringBuilder query = new StringBuilder(commandName).append(' ').append(collection);
+        switch (commandName) {
+            case "find":
+                append(query, "filter", command.get("filter"));
+                appendSort(query, command.get("sort"));
+                break;
+            case "aggregate":
+                append(query, "pipeline", command.get("pipeline"));
+                break;
+            case "count":
+            case "distinct":
+                append(query, "query", command.get("query"));
+                break;
+            case "findAndModify":
+                append(query, "query", command.get("query"));
+                appendSort(query, command.get("sort"));
+                break;
+            case "update":
+                appendStatements(query, command.get("updates"));
+                break;
+            case "delete":
+                appendStatements(query, command.get("deletes"));
+                break;
+            case "getMore":
+                BsonValue getMoreCollection = command.get("collection");
+                if (getMoreCollection != null && getMoreCollection.isString()) {
+                    query.append(getMoreCollection.asString().getValue());
+                }
+                break;
+            default:
+                break;
+        }
+        return query.toString();
+    }
+
+    // Bulk updates / deletes : only the filter (q) of the first statement and the number of statements
+    private static void appendStatements(StringBuilder query, BsonValue statements) {
+        if (statements instanceof BsonArray && !((BsonArray) statements).isEmpty()) {
+            BsonArray array = (BsonArray) statements;
+            BsonValue first = array.get(0);
+            if (first.isDocument()) {
+                append(query, "q", first.asDocument().get("q"));
+            }
+            query.append(" statements=").append(array.size());
+        }
+    }
+
+    // A sort only holds field names and directions, nothing to redact
+    private static void appendSort(StringBuilder query, BsonValue sort) {
+        if (sort != null) {
+            query.append(" sort=").append(sort);
+        }
+    }
+
+    private static void append(StringBuilder query, String name, BsonValue value) {
+        if (value != null) {
+            query.append(' ').append(name).append('=').append(FilterShape.of(value));
+        }
+    }
+}
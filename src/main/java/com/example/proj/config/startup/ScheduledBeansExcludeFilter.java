@@ -0,0 +1,32 @@
+package com.example.proj.config.startup;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * NOTE : Lazy initialization (profile prod)
+ * With spring.main.lazy-initialization a bean is only created when something asks for it. @Scheduled methods are
+ * registered when their bean is created, so a lazy CityStatsServiceImpl, JobServiceImpl or PhotoContentStore
+ * would never run its maintenance. Those beans (any bean with a @Scheduled method) are still created at startup.
+ * @EventListener methods don't need this, their bean is created when the event comes.
+ */
+@Component
+public class ScheduledBeansExcludeFilter implements LazyInitializationExcludeFilter {
+
+    @Override
+    public boolean isExcluded(String beanName, BeanDefinition beanDefinition, Class<?> beanType) {
+        if (beanType == null) {
+            return false;
+        }
+        AtomicBoolean scheduled = new AtomicBoolean();
+        ReflectionUtils.doWithMethods(beanType, method -> scheduled.set(true),
+                method -> AnnotatedElementUtils.hasAnnotation(method, Scheduled.class));
+        return scheduled.get();
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.proj.config.swagger;
+
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.servers.Server;
+import org.springdoc.core.models.GroupedOpenApi;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+// springdoc replaces springfox (no Spring Boot 3 support), Swagger UI is on /swagger-ui.html
+// Off with the prod profile : the document is generated at build time (static/openapi.json)
+@Configuration
+@ConditionalOnProperty(name = "springdoc.api-docs.enabled", havingValue = "true", matchIfMissing = true)
+public class OpenApiConfig {
+
+    // Relative server : otherwise springdoc writes the url of the running instance (localhost:8089 when the
+    // static document is generated), and clients generated from it or Swagger UI would call that host
+    @Bean
+    public OpenAPI openApi(){
+        return new OpenAPI().addServersItem(new Server().url("/"));
+    }
+
+    @Bean
+    public GroupedOpenApi api(){
+        return GroupedOpenApi.builder()
+                .group("api")
+                .pathsToMatch("/**")
+                .build();
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.proj.controller.diagnostics;
+
+import com.example.proj.config.admission.AdmissionControlInterceptor;
+import com.example.proj.dto.QueryPlanReport;
+import com.example.proj.service.diagnostics.QueryDiagnosticsService;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequestMapping("api/v1/diagnostics")
+public class DiagnosticsController {
+
+    private final QueryDiagnosticsService queryDiagnosticsService;
+    private final ObjectProvider<AdmissionControlInterceptor> admissionControl;
+
+    public DiagnosticsController(QueryDiagnosticsService queryDiagnosticsService,
+                                 ObjectProvider<AdmissionControlInterceptor> admissionControl) {
+        this.queryDiagnosticsService = queryDiagnosticsService;
+        this.admissionControl = admissionControl;
+    }
+
+    // Runs explain on the person queries, collectionScan = true means the query reads the whole collection
+    @GetMapping("/explain")
+    public ResponseEntity<?> explainPersonQueries(){
+        try {
+            List<QueryPlanReport> reports = queryDiagnosticsService.explainPersonQueries();
+            return new ResponseEntity<>(reports, HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    // Current limit, in flight, waiting and rejections of every admission group (404 when app.admission.enabled=false)
+    @GetMapping("/admission")
+    public ResponseEntity<?> admissionStats(){
+        AdmissionControlInterceptor interceptor = admissionControl.getIfAvailable();
+        if (interceptor == null) {
+            return new ResponseEntity<>("Admission control is disabled", HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(interceptor.stats(), HttpStatus.OK);
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.proj.controller.job;
+
+import com.example.proj.model.Job;
+import com.example.proj.service.job.JobService;
+import com.example.proj.service.job.JobType;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+// Long reports and exports : submit, poll the status, then fetch the result (see JobServiceImpl)
+@RestController
+// Servlet (Spring MVC) controller, jobs run on their own pool so there is no reactive twin
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@RequestMapping("api/v1/jobs")
+public class JobController {
+
+    private final JobService jobService;
+
+    public JobController(JobService jobService) {
+        this.jobService = jobService;
+    }
+
+    // type : POPULATION_BY_CITY (limit), OLDER_PERSON_IN_EACH_CITY (top) or PERSON_EXPORT
+    // The same job already queued or running is returned instead of starting another one
+    @PostMapping
+    public ResponseEntity<?> submit(@RequestParam JobType type,
+                                    @RequestParam(required = false) Integer top,
+                                    @RequestParam(required = false) Integer limit,
+                                    @RequestParam(required = false) Integer priority) {
+        Map<String, Integer> params = new HashMap<>();
+        params.put("top", top);
+        params.put("limit", limit);
+        try {
+            Job job = jobService.submit(type, params, priority);
+            return ResponseEntity.accepted().location(URI.create("/api/v1/jobs/" + job.getId())).body(job);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (RejectedExecutionException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    // Status only, the rows of a report are not included
+    @GetMapping("/{id}")
+    public ResponseEntity<?> getJob(@PathVariable String id) {
+        try {
+            return new ResponseEntity<>(jobService.getJob(id), HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        }
+    }
+
+    // A report returns its rows, an export its NDJSON file. 409 while the job is not DONE
+    @GetMapping("/{id}/result")
+    public ResponseEntity<?> getResult(@PathVariable String id) {
+        try {
+            Job job = jobService.getResult(id);
+            if (job.getStatus() != Job.Status.DONE) {
+                return new ResponseEntity<>("Job is " + job.getStatus(), HttpStatus.CONFLICT);
+            }
+            if (job.getResultFileId() == null) {
+                return new ResponseEntity<>(job.getResult(), HttpStatus.OK);
+            }
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"persons-" + id + ".ndjson\"")
+                    .body(jobService.getResultFile(job));
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> cancel(@PathVariable String id) {
+        try {
+            return new ResponseEntity<>(jobService.cancel(id), HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        }
+    }
+
+    @GetMapping("/executorStats")
+    public ResponseEntity<?> getExecutorStats() {
+        return new ResponseEntity<>(jobService.getExecutorStats(), HttpStatus.OK);
+    }
+}
@@ -1,27 +1,72 @@
 package com.example.proj.controller.person;
 
+import com.example.proj.dto.BulkDeleteRequest;
+import com.example.proj.dto.BulkDeleteResult;
+import com.example.proj.dto.BulkIngestResult;
+import com.example.proj.dto.CityPopulation;
+import com.example.proj.dto.OldestPersonInCity;
+import com.example.proj.dto.PersonPatch;
+import com.example.proj.dto.PersonSlice;
 import com.example.proj.model.Person;
+import com.example.proj.service.person.PersonBulkDeleteService;
+import com.example.proj.service.person.PersonIngestService;
+import com.example.proj.service.feed.PersonFeedService;
 import com.example.proj.service.person.PersonService;
-import org.bson.Document;
+import com.example.proj.service.stats.CityStatsService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
+// Servlet (Spring MVC) controller, the `reactive` profile uses the Reactive*Controller twins instead
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 // Use RequestMapping on Controller when you develop based on a specific Model Eg: person,student
 @RequestMapping("api/v1/person")
 public class PersonController {
 
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
     private final PersonService personService;
+    private final PersonIngestService personIngestService;
+    private final PersonBulkDeleteService personBulkDeleteService;
+    private final CityStatsService cityStatsService;
+    private final PersonFeedService personFeedService;
+    private final ObjectMapper objectMapper;
+    private final long feedTimeoutMillis;
+    private final int maxPageSize;
 
-    public PersonController(PersonService personService) {
+    public PersonController(PersonService personService, PersonIngestService personIngestService,
+                            PersonBulkDeleteService personBulkDeleteService,
+                            CityStatsService cityStatsService, PersonFeedService personFeedService, ObjectMapper objectMapper,
+                            @Value("${app.person.feed.connection-timeout:30m}") Duration feedTimeout,
+                            @Value("${app.person.search.max-page-size:100}") int maxPageSize) {
         this.personService = personService;
+        this.personIngestService = personIngestService;
+        this.personBulkDeleteService = personBulkDeleteService;
+        this.cityStatsService = cityStatsService;
+        this.personFeedService = personFeedService;
+        this.objectMapper = objectMapper;
+        this.feedTimeoutMillis = feedTimeout.toMillis();
+        this.maxPageSize = maxPageSize;
     }
 
     @PostMapping("/save")
@@ -30,6 +75,14 @@ public class PersonController {
         return new ResponseEntity<>(createdPerson, HttpStatus.CREATED);
     }
 
+    // BULK INGEST : body is a JSON array of persons, or NDJSON (one person per line) for big imports.
+    // The body is read as a stream, so the request size doesn't matter, failures are reported per record.
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_NDJSON})
+    public ResponseEntity<?> bulkIngest(InputStream body){
+        BulkIngestResult result = personIngestService.ingest(body);
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
     @GetMapping("/get")
     // @PatVariables : use for Resource Identification, for instances like IDs, and don't use it for filtering or searching.
     // @RequestParam : use for filtering and searching, don't use for Identifications like By IDs
@@ -42,6 +95,49 @@ public class PersonController {
         }
     }
 
+    // STREAMING : one JSON document per line (NDJSON), written while the Mongo cursor is iterated.
+    // Also used for /get when the client sends "Accept: application/x-ndjson".
+    @GetMapping(value = {"/stream", "/get"}, produces = APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> streamPersons(){
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+                personService.streamPersons(person -> {
+                    try {
+                        generator.writeObject(person);
+                        generator.writeRaw('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON))
+                .body(body);
+    }
+
+    // EVENT FEED : Server-Sent Events with every change of the persons (see PersonFeedServiceImpl), instead of polling /get.
+    // consumer : name under which the position is kept, city : only persons with an address there.
+    // The emitter is in a typed ResponseEntity<SseEmitter> : Spring only streams it when it knows the body type.
+    // After connection-timeout the connection ends, EventSource clients reconnect with Last-Event-ID and continue.
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> personEvents(@RequestParam(required = false) String consumer,
+                                          @RequestParam(required = false) String city,
+                                          @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId){
+        SseEmitter emitter = new SseEmitter(feedTimeoutMillis);
+        try {
+            personFeedService.subscribe(consumer, city, lastEventId, new SseFeedSink(emitter));
+        } catch (IllegalArgumentException e) {
+            // Last-Event-ID is not a token of this feed
+            return ResponseEntity.badRequest().build();
+        } catch (RejectedExecutionException e) {
+            // Too many subscribers
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
     @GetMapping("/getByFirstName")
     // @PatVariables : use for Resource Identification, for instances like IDs, and don't use it for filtering or searching.
     // @RequestParam : use for filtering and searching, don't use for Identifications like By IDs
@@ -49,11 +145,30 @@ public class PersonController {
         try {
             Person personByFistName = personService.getByFirstName(firstName);
             return new ResponseEntity<>(personByFistName, HttpStatus.OK);
+        } catch (RejectedExecutionException e) {
+            // The same read is already running and took too long (see SingleFlight)
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
         } catch (Exception e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         }
     }
 
+    @GetMapping("/get/{personId}")
+    public ResponseEntity<?> getPersonById(@PathVariable String personId){
+        try {
+            Person person = personService.getPersonById(personId);
+            return new ResponseEntity<>(person, HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        }
+    }
+
+    // Hit/miss/eviction counters of the person cache, and how many lookups really went to MongoDB
+    @GetMapping("/cacheStats")
+    public ResponseEntity<?> getCacheStats(){
+        return new ResponseEntity<>(personService.getCacheStats(), HttpStatus.OK);
+    }
+
     @DeleteMapping("/delete/{personId}")
     public ResponseEntity<?> deletePersonById(@PathVariable String personId){
         try {
@@ -64,6 +179,64 @@ public class PersonController {
         }
     }
 
+    // PATCH : only the fields given are changed, e.g. {"incAge": 1, "addHobbies": ["chess"], "expectedVersion": 3}.
+    // 409 when expectedVersion is given and the person was changed since (read it again and retry)
+    @PatchMapping("/patch/{personId}")
+    public ResponseEntity<?> patchPerson(@PathVariable String personId, @RequestBody PersonPatch patch){
+        try {
+            Person patchedPerson = personService.patchPerson(personId, patch);
+            return new ResponseEntity<>(patchedPerson, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (OptimisticLockingFailureException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        }
+    }
+
+    // BULK DELETE : {"ids": [...]} or the /search filters {"firstName", "minAge", "maxAge", "city"}, deleted in batches.
+    // Returns the counters once done, or with Accept: application/x-ndjson one line of counters per batch while it runs.
+    @PostMapping(value = "/bulkDelete", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> bulkDelete(@RequestBody BulkDeleteRequest request){
+        try {
+            BulkDeleteResult result = personBulkDeleteService.delete(request, progress -> { });
+            return new ResponseEntity<>(result, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @PostMapping(value = "/bulkDelete", consumes = MediaType.APPLICATION_JSON_VALUE, produces = APPLICATION_NDJSON)
+    public ResponseEntity<?> bulkDeleteWithProgress(@RequestBody BulkDeleteRequest request){
+        try {
+            // Once the body streams the status is sent, a bad request has to be refused before
+            personBulkDeleteService.validate(request);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().contentType(MediaType.TEXT_PLAIN).body(e.getMessage());
+        }
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+                BulkDeleteResult result = personBulkDeleteService.delete(request, progress -> {
+                    try {
+                        generator.writeObject(progress);
+                        generator.writeRaw('\n');
+                        generator.flush();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                // Last line : done = true
+                generator.writeObject(result);
+                generator.writeRaw('\n');
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON))
+                .body(body);
+    }
+
     @GetMapping("/getPersonByAge")
     public ResponseEntity<?> getPersonByAge(@RequestParam Integer minAge,
                                             @RequestParam Integer maxAge,
@@ -71,6 +244,9 @@ public class PersonController {
         try {
             List<Person> personByAge = personService.getPersonByAge(minAge,maxAge,includeAllFields);
             return new ResponseEntity<>(personByAge, HttpStatus.OK);
+        } catch (RejectedExecutionException e) {
+            // The same read is already running and took too long (see SingleFlight)
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
         } catch (Exception e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         }
@@ -89,42 +265,66 @@ public class PersonController {
         return personService.searchPerson(firstName,minAge,maxAge,city,pageable);
     }
 
+    // KEYSET PAGINATION : pass the nextToken of the previous response as `after` to get the next page.
+    // sortBy : id | age, count : none | exact | estimated, size : 1 .. app.person.search.max-page-size (bigger is capped)
+    @GetMapping("/search/keyset")
+    public ResponseEntity<?> searchPersonKeyset(@RequestParam(required = false) Optional<String> firstName,
+                                                @RequestParam(required = false) Optional<Integer> minAge,
+                                                @RequestParam(required = false) Optional<Integer> maxAge,
+                                                @RequestParam(required = false) Optional<String> city,
+                                                @RequestParam(defaultValue = "id") String sortBy,
+                                                @RequestParam(required = false) String after,
+                                                @RequestParam(defaultValue = "5") Integer size,
+                                                @RequestParam(defaultValue = "none") String count){
+        if (size < 1) {
+            return new ResponseEntity<>("size should be at least 1", HttpStatus.BAD_REQUEST);
+        }
+        try {
+            PersonSlice slice = personService.searchPersonKeyset(firstName, minAge, maxAge, city, sortBy, after,
+                    Math.min(size, maxPageSize), count);
+            return new ResponseEntity<>(slice, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
     // USE CASE : Oldest Person living in a Particular City
+    // top : how many of the oldest persons per city, the aggregation only returns their id, names and age
     @GetMapping("/getOlderPersonIn")
-    public ResponseEntity<?> getOlderPersonInNewYorkCity(){
+    public ResponseEntity<?> getOlderPersonInNewYorkCity(@RequestParam(defaultValue = "1") int top){
         try {
-            // Here the result is taken with Document
-            // NOTE : Document, Not the best option for structured and well-defined data, best use DTOs
-            List<Document> olderPersonInNewYork = personService.getOlderPersonInEachCity();
-            return new ResponseEntity<>(olderPersonInNewYork, HttpStatus.OK);
+            List<OldestPersonInCity> olderPersonInEachCity = personService.getOlderPersonInEachCity(top);
+            return new ResponseEntity<>(olderPersonInEachCity, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         }
-
-        /** //Todo : try Doing this as below and use different types of aggregations like :first name and last name only by city
-         * USE DTOs as below,
-         * public class PersonByCity {
-         *     private String city;
-         *     private Person oldestPerson;
-         *
-         *     // Getters and setters
-         * }
-         * List<PersonByCity> personList = mongoTemplate.aggregate(aggregation, "person", PersonByCity.class).getMappedResults();
-         * **/
     }
     // USE CASE : Population of a particular city
+    // limit : only the most populated cities, all of them when missing
     @GetMapping("/getPopulationByCity")
-    public ResponseEntity<?> getPopulationByCity() {
+    public ResponseEntity<?> getPopulationByCity(@RequestParam(required = false) Integer limit) {
         try {
-            // Here the result is taken with Document
-            // NOTE : Document, Not the best option for structured and well-defined data, best use DTOs
-            List<Document> olderPersonInNewYork = personService.getPopulationByCity();
-            return new ResponseEntity<>(olderPersonInNewYork, HttpStatus.OK);
+            List<CityPopulation> populationByCity = personService.getPopulationByCity(limit);
+            return new ResponseEntity<>(populationByCity, HttpStatus.OK);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
         } catch (Exception e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         }
     }
 
+    // Rebuilds city_stats now instead of waiting for the scheduled rebuild, returns the number of cities
+    @PostMapping("/cityStats/rebuild")
+    public ResponseEntity<?> rebuildCityStats() {
+        try {
+            return new ResponseEntity<>(cityStatsService.rebuild(), HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
     // STORING IMAGES :
 
 
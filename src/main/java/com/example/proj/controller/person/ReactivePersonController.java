@@ -0,0 +1,114 @@
+package com.example.proj.controller.person;
+
+import com.example.proj.dto.PersonPatch;
+import com.example.proj.model.Person;
+import com.example.proj.service.person.ReactivePersonService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+
+// WebFlux twin of PersonController : same paths and parameters, only active with the `reactive` profile
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("api/v1/person")
+public class ReactivePersonController {
+
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+
+    private final ReactivePersonService personService;
+
+    public ReactivePersonController(ReactivePersonService personService) {
+        this.personService = personService;
+    }
+
+    @PostMapping("/save")
+    public Mono<ResponseEntity<Object>> createPerson(@RequestBody Person person){
+        return personService.createPerson(person)
+                .map(createdPerson -> new ResponseEntity<>(createdPerson, HttpStatus.CREATED));
+    }
+
+    @GetMapping("/get")
+    public Mono<ResponseEntity<Object>> getPersons(){
+        return ok(personService.getPersons().collectList()
+                .filter(personList -> !personList.isEmpty())
+                .switchIfEmpty(Mono.error(new RuntimeException("Person Not Found"))));
+    }
+
+    // STREAMING : WebFlux writes each person as one NDJSON line, and only requests more from the cursor
+    // when the client has read what was already sent (back-pressure)
+    @GetMapping(value = {"/stream", "/get"}, produces = APPLICATION_NDJSON)
+    public Flux<Person> streamPersons(){
+        return personService.getPersons();
+    }
+
+    @GetMapping("/getByFirstName")
+    public Mono<ResponseEntity<Object>> getByFirstName(@RequestParam String firstName){
+        return ok(personService.getByFirstName(firstName));
+    }
+
+    @GetMapping("/get/{personId}")
+    public Mono<ResponseEntity<Object>> getPersonById(@PathVariable String personId){
+        return ok(personService.getPersonById(personId));
+    }
+
+    @DeleteMapping("/delete/{personId}")
+    public Mono<ResponseEntity<Object>> deletePersonById(@PathVariable String personId){
+        return ok(personService.deletePersonById(personId));
+    }
+
+    // PATCH : only the fields given are changed, 409 when expectedVersion doesn't match anymore
+    @PatchMapping("/patch/{personId}")
+    public Mono<ResponseEntity<Object>> patchPerson(@PathVariable String personId, @RequestBody PersonPatch patch){
+        return ok(personService.patchPerson(personId, patch));
+    }
+
+    @GetMapping("/getPersonByAge")
+    public Mono<ResponseEntity<Object>> getPersonByAge(@RequestParam Integer minAge,
+                                                       @RequestParam Integer maxAge,
+                                                       @RequestParam boolean includeAllFields){
+        return ok(personService.getPersonByAge(minAge, maxAge, includeAllFields).collectList());
+    }
+
+    @GetMapping("/search")
+    public Mono<Page<Person>> seachPerson(@RequestParam(required = false) Optional<String> firstName,
+                                          @RequestParam(required = false) Optional<Integer> minAge,
+                                          @RequestParam(required = false) Optional<Integer> maxAge,
+                                          @RequestParam(required = false) Optional<String> city,
+                                          @RequestParam(defaultValue = "0") Integer page,
+                                          @RequestParam(defaultValue = "5") Integer size){
+        return personService.searchPerson(firstName, minAge, maxAge, city, PageRequest.of(page, size));
+    }
+
+    @GetMapping("/getOlderPersonIn")
+    public Mono<ResponseEntity<Object>> getOlderPersonInEachCity(@RequestParam(defaultValue = "1") int top){
+        return ok(personService.getOlderPersonInEachCity(top).collectList());
+    }
+
+    @GetMapping("/getPopulationByCity")
+    public Mono<ResponseEntity<Object>> getPopulationByCity(@RequestParam(required = false) Integer limit){
+        return ok(personService.getPopulationByCity(limit).collectList());
+    }
+
+    private static Mono<ResponseEntity<Object>> ok(Mono<?> result) {
+        return result.<ResponseEntity<Object>>map(body -> new ResponseEntity<>(body, HttpStatus.OK))
+                .onErrorResume(ReactivePersonController::notFound);
+    }
+
+    private static Mono<ResponseEntity<Object>> notFound(Throwable e) {
+        if (e instanceof IllegalArgumentException) {
+            return Mono.just(new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST));
+        }
+        if (e instanceof OptimisticLockingFailureException) {
+            return Mono.just(new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT));
+        }
+        return Mono.just(new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND));
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.proj.controller.person;
+
+import com.example.proj.service.feed.PersonFeedSink;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+
+// The person feed written to an SSE connection : closed as soon as the emitter completes, times out or fails
+class SseFeedSink implements PersonFeedSink {
+
+    private final SseEmitter emitter;
+    private volatile boolean closed;
+
+    SseFeedSink(SseEmitter emitter) {
+        this.emitter = emitter;
+        emitter.onCompletion(() -> closed = true);
+        emitter.onTimeout(() -> closed = true);
+        emitter.onError(e -> closed = true);
+    }
+
+    @Override
+    public void send(String eventName, Object data, String eventId) throws IOException {
+        SseEmitter.SseEventBuilder event = SseEmitter.event().name(eventName).data(data, MediaType.APPLICATION_JSON);
+        if (eventId != null) {
+            event.id(eventId);
+        }
+        emitter.send(event);
+    }
+
+    @Override
+    public void heartbeat() throws IOException {
+        emitter.send(SseEmitter.event().comment("heartbeat"));
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void complete(Throwable error) {
+        if (closed) {
+            return;
+        }
+        if (error != null) {
+            emitter.completeWithError(error);
+        } else {
+            emitter.complete();
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package com.example.proj.controller.photo;
 
+import com.example.proj.metrics.PhotoTransferMetrics;
 import com.example.proj.model.Photo;
+import com.example.proj.model.PhotoVariant;
 import com.example.proj.service.photo.PhotoService;
+import com.example.proj.service.photo.PhotoVariantService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.core.io.ByteArrayResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
@@ -9,36 +13,148 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
 @RestController
+// Servlet (Spring MVC) controller, the `reactive` profile uses the Reactive*Controller twins instead
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping("/photo")
 public class PhotoController {
 
     private final PhotoService photoService;
+    private final PhotoVariantService photoVariantService;
+    private final PhotoTransferMetrics transferMetrics;
+    private final PhotoHttpCaching httpCaching;
 
-    public PhotoController(PhotoService photoService) {
+    public PhotoController(PhotoService photoService, PhotoVariantService photoVariantService,
+                           PhotoTransferMetrics transferMetrics, PhotoHttpCaching httpCaching) {
         this.photoService = photoService;
+        this.photoVariantService = photoVariantService;
+        this.transferMetrics = transferMetrics;
+        this.httpCaching = httpCaching;
     }
 
+    // Only the metadata is returned (id, title, size, contentType, checksum), never the image bytes
     @PostMapping("/create")
     public ResponseEntity<?> createPhoto(@RequestParam("image")MultipartFile image){
         try {
             Photo photo = photoService.createPhoto(image.getOriginalFilename(),image);
+            transferMetrics.recordUpload(image.getSize());
             return new ResponseEntity<>(photo, HttpStatus.OK);
         } catch (Exception e) {
             return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
         }
     }
 
+    // Returning a Resource lets Spring handle "Range: bytes=..." headers (206 Partial Content) for us,
+    // and the GridFS content is copied chunk by chunk to the response instead of being loaded in memory.
+    // w / h / format : a resized copy instead of the original (see PhotoVariantServiceImpl), e.g. ?w=200 for a preview
+    // If-None-Match / If-Modified-Since are checked on the metadata only (see PhotoHttpCaching) : a 304 never touches GridFS
     @GetMapping("/{id}")
-    public ResponseEntity<?> downloadPhoto(@PathVariable String id){
-        Photo photo = photoService.getPhotoById(id);
-        Resource resource = new ByteArrayResource(photo.getPhoto().getData());
+    public ResponseEntity<?> downloadPhoto(@PathVariable String id,
+                                           @RequestParam(required = false) Integer w,
+                                           @RequestParam(required = false) Integer h,
+                                           @RequestParam(required = false) String format,
+                                           WebRequest request){
+        Photo photo;
+        try {
+            photo = photoService.getPhotoMetadataById(id);
+        } catch (RejectedExecutionException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        boolean variant = w != null || h != null || format != null;
+        String variantKey = null;
+        if (variant) {
+            // Invalid parameters are a 400 even for a client holding an ETag
+            try {
+                variantKey = photoVariantService.variantKey(photo, w, h, format);
+            } catch (IllegalArgumentException e) {
+                return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+            }
+        }
+        String etag = httpCaching.etag(photo, variantKey);
+        long lastModified = httpCaching.lastModified(photo);
+        if (request.checkNotModified(etag, lastModified)) {
+            return httpCaching.apply(ResponseEntity.status(HttpStatus.NOT_MODIFIED), etag, lastModified).build();
+        }
+        if (variant) {
+            return downloadVariant(photo, w, h, format, etag, lastModified);
+        }
+        Resource resource = transferMetrics.countDownload(photoService.getPhotoContent(photo));
+        MediaType contentType = photo.getContentType() != null
+                ? MediaType.parseMediaType(photo.getContentType())
+                : MediaType.APPLICATION_OCTET_STREAM;
 
-        return ResponseEntity.ok()
+        return httpCaching.apply(ResponseEntity.ok(), etag, lastModified)
                 .header(HttpHeaders.CONTENT_DISPOSITION,"attachment; filename=\"" + photo.getTitle() + "\"")
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentType(contentType)
                 .body(resource);
     }
+
+    private ResponseEntity<?> downloadVariant(Photo photo, Integer w, Integer h, String format, String etag, long lastModified) {
+        PhotoVariant variant;
+        try {
+            variant = photoVariantService.getVariant(photo, w, h, format);
+        } catch (IllegalArgumentException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (RejectedExecutionException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        return httpCaching.apply(ResponseEntity.ok(), etag, lastModified)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + photo.getTitle() + "\"")
+                .contentType(MediaType.parseMediaType(variant.getContentType()))
+                .body(transferMetrics.countDownload(new ByteArrayResource(variant.getContent())));
+    }
+
+    @GetMapping("/variants/cacheStats")
+    public ResponseEntity<?> getVariantCacheStats(){
+        return new ResponseEntity<>(photoVariantService.getCacheStats(), HttpStatus.OK);
+    }
+
+    @GetMapping("/{id}/metadata")
+    public ResponseEntity<?> getPhotoMetadata(@PathVariable String id){
+        try {
+            Photo photo = photoService.getPhotoMetadataById(id);
+            return new ResponseEntity<>(photo, HttpStatus.OK);
+        } catch (RejectedExecutionException e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        }
+    }
+
+    // The content itself is only removed when no other photo uses it (see PhotoContentStore)
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> deletePhoto(@PathVariable String id){
+        try {
+            Photo photo = photoService.deletePhoto(id);
+            photoVariantService.deleteVariants(id);
+            return new ResponseEntity<>(photo, HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND);
+        }
+    }
+
+    // Gallery listing : metadata only, newest first
+    @GetMapping("/list")
+    public ResponseEntity<?> listPhotos(@RequestParam(defaultValue = "0") Integer page,
+                                        @RequestParam(defaultValue = "20") Integer size){
+        List<Photo> photos = photoService.getPhotoMetadata(page, size);
+        return new ResponseEntity<>(photos, HttpStatus.OK);
+    }
+
+    // MIGRATION : moves photos stored as Binary inside the document into GridFS
+    @PostMapping("/migrate")
+    public ResponseEntity<?> migrateLegacyPhotos(){
+        try {
+            long migrated = photoService.migrateLegacyPhotos();
+            return new ResponseEntity<>(migrated, HttpStatus.OK);
+        } catch (Exception e) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
 }
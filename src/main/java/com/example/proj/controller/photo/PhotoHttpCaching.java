@@ -0,0 +1,58 @@
+package com.example.proj.controller.photo;
+
+import com.example.proj.model.Photo;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * NOTE : HTTP caching of photo downloads
+ * A photo never changes once uploaded (a new upload is a new id), so :
+ *  - ETag          : the SHA-256 recorded at upload (strong, the bytes are the same when it is the same),
+ *                    a variant adds its normalized key to it (PhotoVariantService.variantKey : rounded sizes,
+ *                    jpg == jpeg ..), so ?w=801 and ?w=800 share one ETag as they share one variant
+ *  - Last-Modified : uploadedAt
+ *  - Cache-Control : public, long max-age and `immutable`, browsers don't even revalidate on reload
+ * Everything comes from the photo metadata, so If-None-Match can be answered with a 304 before
+ * the content is looked up in GridFS. Legacy photos not migrated yet have no checksum, hence no ETag.
+ */
+@Component
+public class PhotoHttpCaching {
+
+    private final CacheControl cacheControl;
+
+    public PhotoHttpCaching(@Value("${app.photo.cache-control.max-age:365d}") Duration maxAge,
+                            @Value("${app.photo.cache-control.immutable:true}") boolean immutable) {
+        CacheControl cacheControl = CacheControl.maxAge(maxAge).cachePublic();
+        this.cacheControl = immutable ? cacheControl.immutable() : cacheControl;
+    }
+
+    // variantKey : null for the original
+    public String etag(Photo photo, String variantKey) {
+        if (photo.getChecksum() == null) {
+            return null;
+        }
+        if (variantKey == null) {
+            return "\"" + photo.getChecksum() + "\"";
+        }
+        return "\"" + photo.getChecksum() + "-" + variantKey + "\"";
+    }
+
+    public long lastModified(Photo photo) {
+        return photo.getUploadedAt() == null ? -1 : photo.getUploadedAt().getTime();
+    }
+
+    public <B extends ResponseEntity.HeadersBuilder<B>> B apply(B response, String etag, long lastModified) {
+        response.cacheControl(cacheControl);
+        if (etag != null) {
+            response.eTag(etag);
+        }
+        if (lastModified >= 0) {
+            response.lastModified(lastModified);
+        }
+        return response;
+    }
+}
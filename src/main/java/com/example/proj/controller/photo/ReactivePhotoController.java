@@ -0,0 +1,82 @@
+package com.example.proj.controller.photo;
+
+import com.example.proj.metrics.PhotoTransferMetrics;
+import com.example.proj.service.photo.ReactivePhotoService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+// WebFlux twin of PhotoController : same paths and parameters, only active with the `reactive` profile
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@RequestMapping("/photo")
+public class ReactivePhotoController {
+
+    private final ReactivePhotoService photoService;
+    private final PhotoTransferMetrics transferMetrics;
+    private final PhotoHttpCaching httpCaching;
+
+    public ReactivePhotoController(ReactivePhotoService photoService, PhotoTransferMetrics transferMetrics,
+                                   PhotoHttpCaching httpCaching) {
+        this.photoService = photoService;
+        this.transferMetrics = transferMetrics;
+        this.httpCaching = httpCaching;
+    }
+
+    @PostMapping("/create")
+    public Mono<ResponseEntity<Object>> createPhoto(@RequestPart("image") FilePart image){
+        return photoService.createPhoto(image)
+                .doOnNext(photo -> transferMetrics.recordUpload(photo.getSize()))
+                .<ResponseEntity<Object>>map(photo -> new ResponseEntity<>(photo, HttpStatus.OK))
+                .onErrorResume(e -> Mono.just(new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND)));
+    }
+
+    // The body is the GridFS download stream : chunks are sent as they are read, nothing is buffered whole
+    // Same caching headers and 304 as PhotoController, decided on the metadata before the content is opened
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Flux<DataBuffer>>> downloadPhoto(@PathVariable String id, ServerWebExchange exchange){
+        return photoService.getPhotoMetadataById(id).map(photo -> {
+            String etag = httpCaching.etag(photo, null);
+            long lastModified = httpCaching.lastModified(photo);
+            boolean notModified = lastModified >= 0
+                    ? exchange.checkNotModified(etag, Instant.ofEpochMilli(lastModified))
+                    : etag != null && exchange.checkNotModified(etag);
+            if (notModified) {
+                return httpCaching.apply(ResponseEntity.status(HttpStatus.NOT_MODIFIED), etag, lastModified).<Flux<DataBuffer>>build();
+            }
+            ResponseEntity.BodyBuilder response = httpCaching.apply(ResponseEntity.ok(), etag, lastModified)
+                    .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + photo.getTitle() + "\"")
+                    .contentType(photo.getContentType() != null
+                            ? MediaType.parseMediaType(photo.getContentType())
+                            : MediaType.APPLICATION_OCTET_STREAM);
+            if (photo.getSize() != null) {
+                response.contentLength(photo.getSize());
+            }
+            return response.body(transferMetrics.countDownload(photoService.getPhotoContent(photo)));
+        });
+    }
+
+    @GetMapping("/{id}/metadata")
+    public Mono<ResponseEntity<Object>> getPhotoMetadata(@PathVariable String id){
+        return photoService.getPhotoMetadataById(id)
+                .<ResponseEntity<Object>>map(photo -> new ResponseEntity<>(photo, HttpStatus.OK))
+                .onErrorResume(e -> Mono.just(new ResponseEntity<>(e.getMessage(), HttpStatus.NOT_FOUND)));
+    }
+
+    @GetMapping("/list")
+    public Mono<ResponseEntity<Object>> listPhotos(@RequestParam(defaultValue = "0") Integer page,
+                                                   @RequestParam(defaultValue = "20") Integer size){
+        return photoService.getPhotoMetadata(page, size).collectList()
+                .map(photos -> new ResponseEntity<>(photos, HttpStatus.OK));
+    }
+}
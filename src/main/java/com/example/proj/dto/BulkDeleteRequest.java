@@ -0,0 +1,20 @@
+package com.example.proj.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Persons to delete : a list of ids, or the same filters as /search (firstName is a prefix, minAge and maxAge go together)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkDeleteRequest {
+
+    private List<String> ids;
+    private String firstName;
+    private Integer minAge;
+    private Integer maxAge;
+    private String city;
+}
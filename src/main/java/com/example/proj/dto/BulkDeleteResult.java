@@ -0,0 +1,19 @@
+package com.example.proj.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Outcome (or progress, while it runs) of a bulk person delete
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkDeleteResult {
+
+    private Long requested;      // number of ids sent, null for a filter
+    private long deleted;
+    private long batches;        // deleteMany calls done so far
+    private boolean done;
+    private long elapsedMillis;
+    private double docsPerSecond;
+}
@@ -0,0 +1,35 @@
+package com.example.proj.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Outcome of a bulk person ingest : counters, the records that failed and the throughput
+@Data
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkIngestResult {
+
+    private long received;
+    private long inserted;
+    private long upserted;       // persons with an id : replaced if they existed, inserted otherwise
+    private long failed;
+    private List<Failure> failures = new ArrayList<>(); // capped, `failed` always has the real number
+    private String abortedReason; // set when the input could not be read to the end
+    private long elapsedMillis;
+    private double docsPerSecond;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Failure {
+        private long index;      // position of the record in the request body, starting at 0
+        private String personId;
+        private String message;
+    }
+}
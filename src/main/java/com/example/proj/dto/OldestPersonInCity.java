@@ -0,0 +1,21 @@
+package com.example.proj.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// One row of the oldest person by city report : only the fields the report shows, not the whole Person
+// (with top > 1 there are several rows per city, oldest first)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class OldestPersonInCity {
+
+    private String city;
+    private String personId;
+    private String firstName;
+    private String lastName;
+    private Integer age;
+}
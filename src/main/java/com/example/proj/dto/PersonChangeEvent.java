@@ -0,0 +1,22 @@
+package com.example.proj.dto;
+
+import com.example.proj.model.Person;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+// One change of the person collection, as sent by the event feed (see PersonFeedServiceImpl)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PersonChangeEvent {
+
+    private String operation; // insert, update, replace or delete
+    private String personId;
+    private Person person;    // the person after the change, null for a delete
+    private Date changedAt;
+}
@@ -0,0 +1,26 @@
+package com.example.proj.dto;
+
+import com.example.proj.model.Address;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Changes to one person, only the fields given are touched (see PersonPatches). Adding to and removing from the
+// same list, or setting and incrementing age, in one patch is refused : MongoDB can't update a field twice.
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PersonPatch {
+
+    private String firstName;              // $set
+    private String lastName;               // $set
+    private Integer age;                   // $set
+    private Integer incAge;                // $inc, negative to decrease
+    private List<String> addHobbies;       // $push
+    private List<String> removeHobbies;    // $pull, every occurrence
+    private List<Address> addAddresses;    // $push
+    private List<Address> removeAddresses; // $pull, every address matching the fields given (e.g. only city)
+    private Long expectedVersion;          // the patch is refused (409) when the person has another version
+}
@@ -0,0 +1,23 @@
+package com.example.proj.dto;
+
+import com.example.proj.model.Person;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Result of a keyset search : one page of persons and the token to ask for the next one
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PersonSlice {
+
+    private List<Person> content;
+    private boolean hasNext;
+    private String nextToken;      // null on the last page
+    private Long totalCount;       // only when a count was asked for
+    private Boolean countEstimated;
+}
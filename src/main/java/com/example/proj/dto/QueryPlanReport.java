@@ -0,0 +1,24 @@
+package com.example.proj.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// Winning plan of one of the application queries, as reported by explain
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class QueryPlanReport {
+
+    private String query;
+    private String collection;
+    private String filter;           // extended JSON, as sent to the server
+    private String sort;
+    private List<String> stages;     // e.g. [FETCH, IXSCAN] or [COLLSCAN]
+    private List<String> indexes;    // indexes used by the winning plan
+    private boolean collectionScan;
+}
@@ -0,0 +1,105 @@
+package com.example.proj.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * NOTE : Photo bytes in / out
+ * photo.transfer.bytes{direction=in|out} counts the image bytes really transferred :
+ * downloads are counted while the response is written, so an aborted or ranged (206) download
+ * only counts what was sent, not the size of the photo.
+ */
+@Component
+public class PhotoTransferMetrics {
+
+    private final Counter bytesIn;
+    private final Counter bytesOut;
+
+    public PhotoTransferMetrics(MeterRegistry registry) {
+        this.bytesIn = Counter.builder("photo.transfer.bytes").tag("direction", "in").baseUnit("bytes")
+                .description("Photo content received").register(registry);
+        this.bytesOut = Counter.builder("photo.transfer.bytes").tag("direction", "out").baseUnit("bytes")
+                .description("Photo content sent").register(registry);
+    }
+
+    public void recordUpload(long bytes) {
+        bytesIn.increment(bytes);
+    }
+
+    public Resource countDownload(Resource resource) {
+        return new CountingResource(resource, bytesOut);
+    }
+
+    public Flux<DataBuffer> countDownload(Flux<DataBuffer> content) {
+        return content.doOnNext(buffer -> bytesOut.increment(buffer.readableByteCount()));
+    }
+
+    // Not an InputStreamResource on purpose : Spring MVC only serves Range requests for resources that know their length
+    private static final class CountingResource extends AbstractResource {
+
+        private final Resource delegate;
+        private final Counter counter;
+
+        CountingResource(Resource delegate, Counter counter) {
+            this.delegate = delegate;
+            this.counter = counter;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return new FilterInputStream(delegate.getInputStream()) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0) {
+                        counter.increment();
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int read = super.read(buffer, offset, length);
+                    if (read > 0) {
+                        counter.increment(read);
+                    }
+                    return read;
+                }
+            };
+        }
+
+        @Override
+        public boolean exists() {
+            return delegate.exists();
+        }
+
+        @Override
+        public long contentLength() throws IOException {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public long lastModified() throws IOException {
+            return delegate.lastModified();
+        }
+
+        @Override
+        public String getFilename() {
+            return delegate.getFilename();
+        }
+
+        @Override
+        public String getDescription() {
+            return delegate.getDescription();
+        }
+    }
+}
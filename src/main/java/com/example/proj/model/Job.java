@@ -0,0 +1,42 @@
+package com.example.proj.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+import java.util.Map;
+
+// A report or export running in the background (see JobServiceImpl), removed by a TTL index at expireAt
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "jobs")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class Job {
+
+    public enum Status { QUEUED, RUNNING, DONE, FAILED, CANCELLED }
+
+    @Id
+    private String id;
+    private String type;
+    private Map<String, Integer> params;
+    private int priority;
+    private Status status;
+    // type + params, only set while QUEUED / RUNNING : the unique index on it coalesces identical submissions
+    private String activeKey;
+    // Instance running the job, and the last time it said so : an active job without a recent heartbeat is abandoned
+    private String owner;
+    private Date heartbeatAt;
+    private Object result;        // report rows
+    private String resultFileId;  // export : GridFS file id
+    private Long resultCount;
+    private String error;
+    private Date submittedAt;
+    private Date startedAt;
+    private Date finishedAt;
+    private Date expireAt;
+}
@@ -1,5 +1,6 @@
 package com.example.proj.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -19,9 +20,17 @@ public class Person {
     @Id
     private String personId;
     private String firstName;
+    // Lowercase copy of firstName, filled before every save ((Reactive)PersonNormalizationCallback),
+    // so the case-insensitive prefix search can use an index
+    @JsonIgnore
+    private String firstNameLower;
     private String lastName;
     private Integer age;
     private List<String> hobbies;
     private List<Address> addresses;
+    // Bumped by every PATCH and every /save replace, so a client can patch only the version it read (expectedVersion).
+    // /save ignores the version in its body. Not a Spring Data @Version : the bulk ingest upserts
+    // whole documents without reading them first, an imported person has the version given in the file
+    private Long version;
 
 }
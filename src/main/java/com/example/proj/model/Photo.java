@@ -8,6 +8,8 @@ import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
+import java.util.Date;
+
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -17,6 +19,14 @@ public class Photo {
     @Id
     private String id;
     private String title;
+    // Legacy storage : the whole image inside the document (max 16MB), only kept for photos not migrated yet
     private Binary photo;
+    // GridFS storage : id of the file in fs.files, the bytes live in fs.chunks and are streamed in/out
+    private String contentId;
+    // Metadata recorded at write time, so it can be read without touching the payload
+    private String contentType;
+    private Long size;
+    private String checksum; // SHA-256 of the content, hex encoded
+    private Date uploadedAt;
 
 }
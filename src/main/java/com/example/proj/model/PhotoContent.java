@@ -0,0 +1,29 @@
+package com.example.proj.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+// One stored image content (a GridFS file), shared by every Photo with the same SHA-256
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "photo_content")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PhotoContent {
+
+    @Id
+    private String checksum;  // SHA-256 of the content, hex encoded
+    private String contentId; // GridFS file id
+    private Long size;
+    private String contentType;
+    // Number of Photo documents pointing to this content, it is garbage collected some time after reaching 0
+    private long refCount;
+    private Date createdAt;
+    private Date orphanedAt;
+}
@@ -0,0 +1,41 @@
+package com.example.proj.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+// A resized / recompressed copy of a Photo, generated on the first request and kept in GridFS like the original
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "photo_variant")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PhotoVariant {
+
+    @Id
+    private String id;
+    private String photoId;
+    // Requested bounding box (0 = not constrained) and output format, together they identify the variant
+    private int maxWidth;
+    private int maxHeight;
+    private String format;
+    // Size of the generated image, within the bounding box and keeping the aspect ratio of the original
+    private int width;
+    private int height;
+    private String contentId;
+    private String contentType;
+    private Long size;
+    private Date createdAt;
+
+    // The encoded image, only held by the in-memory variant cache, never stored in the document
+    @Transient
+    @JsonIgnore
+    private byte[] content;
+}
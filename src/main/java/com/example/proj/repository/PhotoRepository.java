@@ -1,9 +1,24 @@
 package com.example.proj.repository;
 
 import com.example.proj.model.Photo;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface PhotoRepository extends MongoRepository<Photo,String> {
+
+    // Metadata only : the legacy 'photo' Binary is excluded by the projection, so it never leaves the database
+    @Query(value = "{'_id': ?0 }",
+            fields = "{'photo': 0}")
+    Optional<Photo> findMetadataById(String id);
+
+    // Returning a List (not a Page) skips the extra count query for every gallery page
+    @Query(value = "{}",
+            fields = "{'photo': 0}")
+    List<Photo> findAllMetadata(Pageable pageable);
 }
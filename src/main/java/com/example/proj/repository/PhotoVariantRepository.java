@@ -0,0 +1,16 @@
+package com.example.proj.repository;
+
+import com.example.proj.model.PhotoVariant;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface PhotoVariantRepository extends MongoRepository<PhotoVariant,String> {
+
+    List<PhotoVariant> findByPhotoId(String photoId);
+
+    Optional<PhotoVariant> findByPhotoIdAndMaxWidthAndMaxHeightAndFormat(String photoId, int maxWidth, int maxHeight, String format);
+}
@@ -0,0 +1,23 @@
+package com.example.proj.repository;
+
+import com.example.proj.model.Person;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Reactive twin of PersonRepository (same queries), only created with the `reactive` profile
+@Repository
+public interface ReactivePersonRepository extends ReactiveMongoRepository<Person,String> {
+
+    @Query("{'firstName': ?0 }")
+    Mono<Person> findByFirstName(String firstName);
+
+    @Query(value = "{'age': { $gt : ?0, $lt : ?1 }}")
+    Flux<Person> findPersonByAge(Integer minAge, Integer maxAge);
+
+    @Query(value = "{'age': { $gt : ?0, $lt : ?1 }}",
+            fields = "{'addresses': 0}")
+    Flux<Person> findPersonByAgeFieldIncludingOnly(Integer minAge, Integer maxAge);
+}
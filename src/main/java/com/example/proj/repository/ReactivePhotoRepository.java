@@ -0,0 +1,22 @@
+package com.example.proj.repository;
+
+import com.example.proj.model.Photo;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+// Reactive twin of PhotoRepository (same projections), only created with the `reactive` profile
+@Repository
+public interface ReactivePhotoRepository extends ReactiveMongoRepository<Photo,String> {
+
+    @Query(value = "{'_id': ?0 }",
+            fields = "{'photo': 0}")
+    Mono<Photo> findMetadataById(String id);
+
+    @Query(value = "{}",
+            fields = "{'photo': 0}")
+    Flux<Photo> findAllMetadata(Pageable pageable);
+}
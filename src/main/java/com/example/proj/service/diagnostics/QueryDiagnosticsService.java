@@ -0,0 +1,9 @@
+package com.example.proj.service.diagnostics;
+
+import com.example.proj.dto.QueryPlanReport;
+
+import java.util.List;
+
+public interface QueryDiagnosticsService {
+    List<QueryPlanReport> explainPersonQueries();
+}
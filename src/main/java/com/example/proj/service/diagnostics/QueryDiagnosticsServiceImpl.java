@@ -0,0 +1,89 @@
+package com.example.proj.service.diagnostics;
+
+import com.example.proj.dto.QueryPlanReport;
+import com.example.proj.model.Person;
+import com.example.proj.service.person.PersonSearchCriteria;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * NOTE : explain on the application queries
+ * The filters are built with the same code as the real queries (PersonSearchCriteria) with sample values,
+ * so a change to a query shows up here. Only the query planner runs (verbosity queryPlanner),
+ * nothing is executed, so this is cheap to call on a live database.
+ */
+@Service
+public class QueryDiagnosticsServiceImpl implements QueryDiagnosticsService {
+
+    private final MongoTemplate mongoTemplate;
+
+    public QueryDiagnosticsServiceImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public List<QueryPlanReport> explainPersonQueries() {
+        List<QueryPlanReport> reports = new ArrayList<>();
+        reports.add(explain("PersonRepository.findByFirstName",
+                new Document("firstName", "John"), null));
+        reports.add(explain("PersonRepository.findPersonByAge",
+                new Document("age", new Document("$gt", 20).append("$lt", 40)), null));
+        reports.add(explain("PersonService.searchPerson(firstName)",
+                search(Optional.of("jo"), Optional.empty(), Optional.empty(), Optional.empty()), null));
+        reports.add(explain("PersonService.searchPerson(minAge,maxAge)",
+                search(Optional.empty(), Optional.of(20), Optional.of(40), Optional.empty()), null));
+        reports.add(explain("PersonService.searchPerson(city)",
+                search(Optional.empty(), Optional.empty(), Optional.empty(), Optional.of("New York")), null));
+        reports.add(explain("PersonService.searchPersonKeyset(sortBy=age)",
+                new Document(), new Document("age", 1).append("_id", 1)));
+        return reports;
+    }
+
+    private static Document search(Optional<String> firstName, Optional<Integer> minAge, Optional<Integer> maxAge, Optional<String> city) {
+        List<Criteria> criteria = PersonSearchCriteria.of(firstName, minAge, maxAge, city);
+        return PersonSearchCriteria.and(criteria).getCriteriaObject();
+    }
+
+    private QueryPlanReport explain(String name, Document filter, Document sort) {
+        String collection = mongoTemplate.getCollectionName(Person.class);
+        Document find = new Document("find", collection).append("filter", filter);
+        if (sort != null) {
+            find.append("sort", sort);
+        }
+        Document result = mongoTemplate.getDb().runCommand(
+                new Document("explain", find).append("verbosity", "queryPlanner"));
+
+        Document queryPlanner = (Document) result.get("queryPlanner");
+        List<String> stages = new ArrayList<>();
+        List<String> indexes = new ArrayList<>();
+        collectStages(queryPlanner.get("winningPlan"), stages, indexes);
+        return new QueryPlanReport(name, collection, filter.toJson(), sort == null ? null : sort.toJson(),
+                stages, indexes, stages.contains("COLLSCAN"));
+    }
+
+    // Walks the plan tree (inputStage / inputStages / queryPlan ..) and keeps every stage name and index name
+    private static void collectStages(Object node, List<String> stages, List<String> indexes) {
+        if (node instanceof Document) {
+            Document document = (Document) node;
+            if (document.get("stage") instanceof String) {
+                stages.add(document.getString("stage"));
+            }
+            if (document.get("indexName") instanceof String) {
+                indexes.add(document.getString("indexName"));
+            }
+            for (Object value : document.values()) {
+                collectStages(value, stages, indexes);
+            }
+        } else if (node instanceof List) {
+            for (Object value : (List<?>) node) {
+                collectStages(value, stages, indexes);
+            }
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package com.example.proj.service.feed;
+
+public interface PersonFeedService {
+    void subscribe(String consumer, String city, String lastEventId, PersonFeedSink sink);
+}
@@ -0,0 +1,198 @@
+package com.example.proj.service.feed;
+
+import com.example.proj.dto.PersonChangeEvent;
+import com.example.proj.model.Person;
+import com.mongodb.MongoCommandException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonDocument;
+import org.bson.BsonTimestamp;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NOTE : Person event feed (change streams)
+ * Every subscription opens a change stream on the person collection and pushes what changes, instead of
+ * consumers re-reading the whole collection on every poll :
+ *  - filtered by the server : insert / update / replace / delete only, and with `city` only persons having an
+ *    address there (deletes carry no document, so they are always sent : unknown ids can be ignored)
+ *  - batched : events are sent together once `batch-size` are there or the first one waited `batch-max-wait`
+ *  - resumable : every batch carries the resume token as its SSE id, and with a `consumer` name the token is
+ *    also stored in person_feed_consumers once the batch is sent. A reconnect (Last-Event-ID, or the stored
+ *    token) continues right after the last batch received, nothing is lost in between. When the token is too
+ *    old for the oplog a "reset" event is sent and the feed starts from now : the consumer has to resync.
+ * The stored token also moves forward while nothing matches (heartbeats), so a quiet city never falls off the oplog.
+ * Change streams need a replica set (see scripts/replica-set), a standalone server ends the feed with an error.
+ * Each subscription holds one thread and one connection, at most `max-subscribers` at a time.
+ */
+@Service
+public class PersonFeedServiceImpl implements PersonFeedService {
+
+    private static final Logger log = LoggerFactory.getLogger(PersonFeedServiceImpl.class);
+    public static final String CONSUMERS = "person_feed_consumers";
+    private static final List<String> OPERATIONS = List.of("insert", "update", "replace", "delete");
+    // ChangeStreamHistoryLost, ChangeStreamFatalError : the resume token can't be used anymore
+    private static final Set<Integer> HISTORY_LOST = Set.of(286, 280);
+
+    private final MongoTemplate mongoTemplate;
+    private final ThreadPoolExecutor subscribers;
+    private final int batchSize;
+    private final long batchMaxWaitMillis;
+    private final long heartbeatMillis;
+
+    public PersonFeedServiceImpl(MongoTemplate mongoTemplate,
+                                 @Value("${app.person.feed.max-subscribers:50}") int maxSubscribers,
+                                 @Value("${app.person.feed.batch-size:100}") int batchSize,
+                                 @Value("${app.person.feed.batch-max-wait:200ms}") Duration batchMaxWait,
+                                 @Value("${app.person.feed.heartbeat:15s}") Duration heartbeat) {
+        this.mongoTemplate = mongoTemplate;
+        // No queue : past maxSubscribers a new subscription is rejected (RejectedExecutionException)
+        this.subscribers = new ThreadPoolExecutor(0, maxSubscribers, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), new CustomizableThreadFactory("person-feed-"));
+        this.batchSize = batchSize;
+        this.batchMaxWaitMillis = batchMaxWait.toMillis();
+        this.heartbeatMillis = heartbeat.toMillis();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.shutdownNow();
+    }
+
+    @Override
+    public void subscribe(String consumer, String city, String lastEventId, PersonFeedSink sink) {
+        // Last-Event-ID is what the client really received, the stored token may be behind it
+        BsonDocument resumeToken = lastEventId != null ? parseToken(lastEventId) : storedToken(consumer);
+        subscribers.execute(() -> run(consumer, city, resumeToken, sink));
+    }
+
+    private void run(String consumer, String city, BsonDocument resumeToken, PersonFeedSink sink) {
+        Throwable error = null;
+        try {
+            try {
+                stream(consumer, city, resumeToken, sink);
+            } catch (MongoCommandException e) {
+                if (resumeToken == null || !HISTORY_LOST.contains(e.getErrorCode())) {
+                    throw e;
+                }
+                log.warn("Person feed {} : resume token is too old ({}), starting from now", consumer, e.getErrorCodeName());
+                sink.send("reset", "The feed could not be resumed, resync and continue from here", null);
+                stream(consumer, city, null, sink);
+            }
+        } catch (IOException e) {
+            // The consumer went away, it will come back with its token
+            log.debug("Person feed {} closed by the consumer", consumer);
+        } catch (RuntimeException e) {
+            log.warn("Person feed {} stopped", consumer, e);
+            error = e;
+        } finally {
+            sink.complete(error);
+        }
+    }
+
+    private void stream(String consumer, String city, BsonDocument resumeToken, PersonFeedSink sink) throws IOException {
+        Bson match = city == null
+                ? Filters.in("operationType", OPERATIONS)
+                : Filters.and(Filters.in("operationType", OPERATIONS),
+                        Filters.or(Filters.eq("operationType", "delete"), Filters.eq("fullDocument.addresses.city", city)));
+        ChangeStreamIterable<Document> changes = mongoTemplate.getCollection(mongoTemplate.getCollectionName(Person.class))
+                .watch(List.of(Aggregates.match(match)))
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .batchSize(batchSize)
+                // tryNext() waits at most this long on the server for new events
+                .maxAwaitTime(batchMaxWaitMillis, TimeUnit.MILLISECONDS);
+        if (resumeToken != null) {
+            changes.resumeAfter(resumeToken);
+        }
+
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = changes.cursor()) {
+            // The change stream is open : the consumer gets the response headers now, not with the first event
+            sink.heartbeat();
+            List<PersonChangeEvent> batch = new ArrayList<>();
+            long firstEventAt = 0;
+            long lastSentAt = System.currentTimeMillis();
+            while (!sink.isClosed() && !Thread.currentThread().isInterrupted()) {
+                ChangeStreamDocument<Document> change = cursor.tryNext();
+                long now = System.currentTimeMillis();
+                if (change != null) {
+                    if (batch.isEmpty()) {
+                        firstEventAt = now;
+                    }
+                    batch.add(toEvent(change));
+                }
+                // Also advances while nothing matched the filter
+                BsonDocument token = cursor.getResumeToken();
+                if (!batch.isEmpty() && (batch.size() >= batchSize || now - firstEventAt >= batchMaxWaitMillis)) {
+                    sink.send("persons", batch, token == null ? null : token.toJson());
+                    storeToken(consumer, token);
+                    batch = new ArrayList<>();
+                    lastSentAt = now;
+                } else if (batch.isEmpty() && now - lastSentAt >= heartbeatMillis) {
+                    // Finds out about consumers that went away, and keeps the stored token recent
+                    sink.heartbeat();
+                    storeToken(consumer, token);
+                    lastSentAt = now;
+                }
+            }
+        }
+    }
+
+    private PersonChangeEvent toEvent(ChangeStreamDocument<Document> change) {
+        BsonValue id = change.getDocumentKey() == null ? null : change.getDocumentKey().get("_id");
+        String personId = id == null ? null : id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.asString().getValue();
+        Person person = change.getFullDocument() == null ? null
+                : mongoTemplate.getConverter().read(Person.class, change.getFullDocument());
+        BsonTimestamp clusterTime = change.getClusterTime();
+        return new PersonChangeEvent(change.getOperationTypeString(), personId, person,
+                clusterTime == null ? null : new Date(clusterTime.getTime() * 1000L));
+    }
+
+    private BsonDocument storedToken(String consumer) {
+        if (consumer == null) {
+            return null;
+        }
+        Document stored = mongoTemplate.findById(consumer, Document.class, CONSUMERS);
+        return stored == null || stored.getString("resumeToken") == null ? null : parseToken(stored.getString("resumeToken"));
+    }
+
+    private void storeToken(String consumer, BsonDocument token) {
+        if (consumer == null || token == null) {
+            return;
+        }
+        mongoTemplate.upsert(Query.query(Criteria.where("_id").is(consumer)),
+                new Update().set("resumeToken", token.toJson()).set("updatedAt", new Date()), CONSUMERS);
+    }
+
+    private static BsonDocument parseToken(String token) {
+        try {
+            return BsonDocument.parse(token);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid Last-Event-ID");
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.proj.service.feed;
+
+import java.io.IOException;
+
+// Where a feed subscription writes to (an SSE connection), an IOException means the consumer is gone
+public interface PersonFeedSink {
+    void send(String eventName, Object data, String eventId) throws IOException;
+
+    void heartbeat() throws IOException;
+
+    boolean isClosed();
+
+    void complete(Throwable error);
+}
@@ -0,0 +1,20 @@
+package com.example.proj.service.job;
+
+import com.example.proj.model.Job;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+
+import java.util.Map;
+
+public interface JobService {
+    Job submit(JobType type, Map<String, Integer> params, Integer priority);
+
+    Job getJob(String id);
+
+    Job getResult(String id);
+
+    GridFsResource getResultFile(Job job);
+
+    Job cancel(String id);
+
+    Map<String, Object> getExecutorStats();
+}
@@ -0,0 +1,386 @@
+package com.example.proj.service.job;
+
+import com.example.proj.model.Job;
+import com.example.proj.service.person.PersonService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.gridfs.GridFSBucket;
+import com.mongodb.client.gridfs.GridFSBuckets;
+import com.mongodb.client.gridfs.GridFSUploadStream;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import com.mongodb.client.gridfs.model.GridFSUploadOptions;
+import jakarta.annotation.PreDestroy;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.gridfs.GridFsResource;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * NOTE : Background jobs (reports and exports)
+ * A submission returns a job id right away, the work runs on a small pool and the outcome is kept in `jobs` :
+ *  - reports (PersonService aggregations) : the rows are stored in the job document
+ *  - export (every person as NDJSON)      : streamed into a GridFS file, the job keeps its id
+ * The queue is ordered by priority (then submission order) and bounded : past `queue-capacity` waiting jobs
+ * a submission is rejected (503) instead of piling up.
+ * Identical submissions (same type and params) coalesce : while a job is QUEUED or RUNNING its `activeKey`
+ * holds a unique index entry, so a second insert fails and the caller gets the job already there, also when
+ * it runs on another instance. The instance owning a job refreshes its heartbeat every `heartbeat-interval`
+ * for as long as it is queued or running there, only a job whose heartbeat is older than `stale-after`
+ * (its instance died) is taken over, never one this instance still has, and only if its heartbeat didn't move.
+ * Every status change is conditional on the previous status, so a cancel (from any instance) always wins :
+ * a queued job never starts, a running one stops at its next cancelled check (an export : at the next person,
+ * a report : the aggregation already sent runs to its end on the server) and its result is dropped.
+ * Finished jobs expire after `result-ttl` (TTL index on expireAt), their export files are purged after them.
+ */
+@Service
+public class JobServiceImpl implements JobService {
+
+    private static final Logger log = LoggerFactory.getLogger(JobServiceImpl.class);
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+    private static final int MAX_SUBMIT_ATTEMPTS = 3;
+
+    private final MongoTemplate mongoTemplate;
+    private final GridFsTemplate gridFsTemplate;
+    private final PersonService personService;
+    private final ObjectMapper objectMapper;
+    private final ThreadPoolExecutor workers;
+    private final Map<String, JobTask> tasks = new ConcurrentHashMap<>();
+    // pid@host plus a random part : unique per running instance, readable in the jobs collection
+    private final String instanceId = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong sequence = new AtomicLong();
+    private final int queueCapacity;
+    private final Duration resultTtl;
+    private final Duration staleAfter;
+
+    public JobServiceImpl(MongoTemplate mongoTemplate, GridFsTemplate gridFsTemplate, PersonService personService,
+                          ObjectMapper objectMapper,
+                          @Value("${app.jobs.threads:2}") int threads,
+                          @Value("${app.jobs.queue-capacity:50}") int queueCapacity,
+                          @Value("${app.jobs.result-ttl:1h}") Duration resultTtl,
+                          @Value("${app.jobs.stale-after:30m}") Duration staleAfter) {
+        this.mongoTemplate = mongoTemplate;
+        this.gridFsTemplate = gridFsTemplate;
+        this.personService = personService;
+        this.objectMapper = objectMapper;
+        // PriorityBlockingQueue is unbounded, submit() enforces queueCapacity itself
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), new CustomizableThreadFactory("job-"));
+        this.queueCapacity = queueCapacity;
+        this.resultTtl = resultTtl;
+        this.staleAfter = staleAfter;
+    }
+
+    // Jobs of this instance would stay QUEUED / RUNNING (and keep their activeKey) until stale-after
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+        for (JobTask task : tasks.values()) {
+            finish(task.job.getId(), Job.Status.FAILED, new Update().set("error", "The application was shut down"));
+        }
+    }
+
+    @Override
+    public Job submit(JobType type, Map<String, Integer> params, Integer priority) {
+        Map<String, Integer> accepted = type.accept(params);
+        String key = type.key(accepted);
+        for (int attempt = 0; attempt < MAX_SUBMIT_ATTEMPTS; attempt++) {
+            Job active = mongoTemplate.findOne(Query.query(Criteria.where("activeKey").is(key)), Job.class);
+            if (active != null && !isStale(active)) {
+                return active;
+            }
+            if (active != null) {
+                log.warn("Job {} ({}) of {} has no heartbeat since {}, taking it over",
+                        active.getId(), key, active.getOwner(), lastHeartbeat(active));
+                // Only while the heartbeat is still the one seen : a job that came back to life is left alone
+                Query abandoned = activeJob(active.getId()).addCriteria(Criteria.where("heartbeatAt").is(active.getHeartbeatAt()));
+                finish(abandoned, Job.Status.FAILED, new Update().set("error", "Abandoned, resubmitted as a new job"));
+                continue;
+            }
+            if (workers.getQueue().size() >= queueCapacity) {
+                throw new RejectedExecutionException("Too many jobs waiting, try again later");
+            }
+
+            Date now = new Date();
+            Job job = new Job(null, type.name(), accepted, priority == null ? type.getDefaultPriority() : priority,
+                    Job.Status.QUEUED, key, instanceId, now, null, null, null, null, now, null, null, activeExpireAt(now));
+            try {
+                job = mongoTemplate.insert(job);
+            } catch (DuplicateKeyException e) {
+                // The same job was submitted at the same time : look it up again
+                continue;
+            }
+            JobTask task = new JobTask(job, sequence.incrementAndGet());
+            tasks.put(job.getId(), task);
+            workers.execute(task);
+            return job;
+        }
+        throw new IllegalStateException("Could not submit " + key + ", it keeps changing state");
+    }
+
+    @Override
+    public Job getJob(String id) {
+        Query query = Query.query(Criteria.where("_id").is(id));
+        query.fields().exclude("result");
+        return found(mongoTemplate.findOne(query, Job.class));
+    }
+
+    @Override
+    public Job getResult(String id) {
+        return found(mongoTemplate.findById(id, Job.class));
+    }
+
+    @Override
+    public GridFsResource getResultFile(Job job) {
+        GridFSFile file = gridFsTemplate.findOne(Query.query(Criteria.where("_id").is(new ObjectId(job.getResultFileId()))));
+        if (file == null) {
+            throw new RuntimeException("Job result Not Found");
+        }
+        return gridFsTemplate.getResource(file);
+    }
+
+    @Override
+    public Job cancel(String id) {
+        Job cancelled = finish(id, Job.Status.CANCELLED, new Update());
+        JobTask task = tasks.get(id);
+        if (task != null) {
+            task.cancel();
+            workers.remove(task);
+            tasks.remove(id);
+        }
+        // Already finished : nothing to cancel, the job is returned as it is
+        return cancelled != null ? cancelled : getJob(id);
+    }
+
+    @Override
+    public Map<String, Object> getExecutorStats() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("running", workers.getActiveCount());
+        map.put("queued", workers.getQueue().size());
+        map.put("queueCapacity", queueCapacity);
+        map.put("completed", workers.getCompletedTaskCount());
+        return map;
+    }
+
+    // Keeps the jobs of this instance from being taken over, and from expiring, however long they wait or run
+    @Scheduled(fixedDelayString = "${app.jobs.heartbeat-interval:PT30S}",
+               initialDelayString = "${app.jobs.heartbeat-interval:PT30S}")
+    public long heartbeat() {
+        if (tasks.isEmpty()) {
+            return 0;
+        }
+        Date now = new Date();
+        Query owned = Query.query(Criteria.where("_id").in(tasks.keySet()).and("owner").is(instanceId)
+                .and("status").in(Job.Status.QUEUED, Job.Status.RUNNING));
+        return mongoTemplate.updateMulti(owned, new Update().set("heartbeatAt", now).set("expireAt", activeExpireAt(now)),
+                Job.class).getModifiedCount();
+    }
+
+    // Export files outlive their job (TTL only removes the document) : files of jobs that are gone are deleted
+    @Scheduled(fixedDelayString = "${app.jobs.purge-interval:PT10M}",
+               initialDelayString = "${app.jobs.purge-interval:PT10M}")
+    public long purgeExpiredExports() {
+        Date cutoff = new Date(System.currentTimeMillis() - resultTtl.toMillis());
+        List<ObjectId> orphaned = new ArrayList<>();
+        for (GridFSFile file : gridFsTemplate.find(Query.query(
+                Criteria.where("metadata.jobId").exists(true).and("uploadDate").lt(cutoff)))) {
+            String jobId = file.getMetadata().getString("jobId");
+            if (!mongoTemplate.exists(Query.query(Criteria.where("_id").is(jobId)), Job.class)) {
+                orphaned.add(file.getObjectId());
+            }
+        }
+        if (!orphaned.isEmpty()) {
+            gridFsTemplate.delete(Query.query(Criteria.where("_id").in(orphaned)));
+            log.info("Removed {} expired job exports", orphaned.size());
+        }
+        return orphaned.size();
+    }
+
+    private void run(JobTask task) {
+        Job job = task.job;
+        Query queued = Query.query(Criteria.where("_id").is(job.getId()).and("status").is(Job.Status.QUEUED));
+        Date now = new Date();
+        if (mongoTemplate.updateFirst(queued, new Update().set("status", Job.Status.RUNNING).set("startedAt", now)
+                .set("heartbeatAt", now), Job.class).getModifiedCount() == 0) {
+            // Cancelled (or taken over) while it was waiting
+            return;
+        }
+
+        Update result = new Update();
+        ObjectId exportFile = null;
+        try {
+            switch (JobType.valueOf(job.getType())) {
+                case POPULATION_BY_CITY -> {
+                    List<?> rows = personService.getPopulationByCity(job.getParams().get("limit"));
+                    result.set("result", rows).set("resultCount", (long) rows.size());
+                }
+                case OLDER_PERSON_IN_EACH_CITY -> {
+                    List<?> rows = personService.getOlderPersonInEachCity(job.getParams().getOrDefault("top", 1));
+                    result.set("result", rows).set("resultCount", (long) rows.size());
+                }
+                case PERSON_EXPORT -> exportFile = export(task, result);
+            }
+        } catch (RuntimeException | IOException e) {
+            if (task.cancelled) {
+                return;
+            }
+            log.warn("Job {} ({}) failed", job.getId(), job.getActiveKey(), e);
+            finish(job.getId(), Job.Status.FAILED, new Update().set("error", e.getMessage()));
+            return;
+        }
+
+        if (finish(job.getId(), Job.Status.DONE, result) == null && exportFile != null) {
+            // Cancelled while running : the export file is nobody's
+            gridFsTemplate.delete(Query.query(Criteria.where("_id").is(exportFile)));
+        }
+    }
+
+    // NDJSON, written while the person cursor is iterated (see PersonController.streamPersons)
+    private ObjectId export(JobTask task, Update result) throws IOException {
+        GridFSBucket bucket = GridFSBuckets.create(mongoTemplate.getDb());
+        GridFSUploadOptions options = new GridFSUploadOptions()
+                .metadata(new Document("jobId", task.job.getId()).append("_contentType", APPLICATION_NDJSON));
+        GridFSUploadStream upload = bucket.openUploadStream("persons-" + task.job.getId() + ".ndjson", options);
+        long count;
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(upload)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            count = personService.streamPersons(person -> {
+                if (task.cancelled) {
+                    throw new CancellationException("Job cancelled");
+                }
+                try {
+                    generator.writeObject(person);
+                    generator.writeRaw('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (RuntimeException | IOException e) {
+            // Nothing of a partial export is kept
+            upload.abort();
+            throw e;
+        }
+        upload.close();
+        result.set("resultFileId", upload.getObjectId().toHexString()).set("resultCount", count);
+        return upload.getObjectId();
+    }
+
+    // Moves an active job to a final status, returns null when it was not active anymore
+    private Job finish(String id, Job.Status status, Update update) {
+        return finish(activeJob(id), status, update);
+    }
+
+    private Job finish(Query active, Job.Status status, Update update) {
+        Date now = new Date();
+        update.set("status", status).set("finishedAt", now)
+                .set("expireAt", new Date(now.getTime() + resultTtl.toMillis()))
+                .unset("activeKey");
+        return mongoTemplate.findAndModify(active, update, FindAndModifyOptions.options().returnNew(true), Job.class);
+    }
+
+    private static Query activeJob(String id) {
+        return Query.query(Criteria.where("_id").is(id).and("status").in(Job.Status.QUEUED, Job.Status.RUNNING));
+    }
+
+    // A job queued or running here is alive whatever its heartbeat says (e.g. the database was unreachable for a while)
+    private boolean isStale(Job job) {
+        return !tasks.containsKey(job.getId())
+                && lastHeartbeat(job).getTime() + staleAfter.toMillis() < System.currentTimeMillis();
+    }
+
+    // Jobs stored before heartbeats existed only have submittedAt
+    private static Date lastHeartbeat(Job job) {
+        return job.getHeartbeatAt() != null ? job.getHeartbeatAt() : job.getSubmittedAt();
+    }
+
+    // While active the TTL stays far enough ahead, each heartbeat moves it
+    private Date activeExpireAt(Date now) {
+        return new Date(now.getTime() + staleAfter.toMillis() + resultTtl.toMillis());
+    }
+
+    private static Job found(Job job) {
+        if (job == null) {
+            throw new RuntimeException("Job Not Found");
+        }
+        return job;
+    }
+
+    // Ordered by priority (higher first), then by submission
+    private final class JobTask implements Runnable, Comparable<JobTask> {
+
+        private final Job job;
+        private final long sequence;
+        private volatile boolean cancelled;
+        private Thread runner;
+
+        private JobTask(Job job, long sequence) {
+            this.job = job;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                runner = Thread.currentThread();
+            }
+            try {
+                JobServiceImpl.this.run(this);
+            } finally {
+                synchronized (this) {
+                    runner = null;
+                    // A cancel right at the end must not interrupt the next job of this thread
+                    Thread.interrupted();
+                }
+                tasks.remove(job.getId());
+            }
+        }
+
+        // Stops the work at the next `cancelled` check : an export at the next person, a report once its aggregation
+        // returns (the driver doesn't abort a read in progress on interrupt). The interrupt only cuts short the waits
+        // that do react to it (a pooled connection, a queue ..)
+        private synchronized void cancel() {
+            cancelled = true;
+            if (runner != null) {
+                runner.interrupt();
+            }
+        }
+
+        @Override
+        public int compareTo(JobTask other) {
+            int byPriority = Integer.compare(other.job.getPriority(), job.getPriority());
+            return byPriority != 0 ? byPriority : Long.compare(sequence, other.sequence);
+        }
+    }
+}
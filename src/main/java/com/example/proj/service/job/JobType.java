@@ -0,0 +1,42 @@
+package com.example.proj.service.job;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// What a job runs, its default priority (higher runs first) and the parameters it accepts
+public enum JobType {
+    POPULATION_BY_CITY(5, "limit"),
+    OLDER_PERSON_IN_EACH_CITY(5, "top"),
+    PERSON_EXPORT(1);
+
+    private final int defaultPriority;
+    private final List<String> params;
+
+    JobType(int defaultPriority, String... params) {
+        this.defaultPriority = defaultPriority;
+        this.params = List.of(params);
+    }
+
+    public int getDefaultPriority() {
+        return defaultPriority;
+    }
+
+    // Keeps the parameters of this type only (sorted, so the coalescing key doesn't depend on their order)
+    public Map<String, Integer> accept(Map<String, Integer> requested) {
+        Map<String, Integer> accepted = new TreeMap<>();
+        requested.forEach((name, value) -> {
+            if (value != null && params.contains(name)) {
+                if (value < 1) {
+                    throw new IllegalArgumentException(name + " should be at least 1");
+                }
+                accepted.put(name, value);
+            }
+        });
+        return accepted;
+    }
+
+    public String key(Map<String, Integer> accepted) {
+        return name() + accepted;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.proj.service.person;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * NOTE : Continuation token for keyset (seek) pagination
+ * It holds the sort key values of the last person of a page, the next page starts right after them.
+ * The client gets it as an opaque base64 string and sends it back as it is.
+ */
+@Getter
+public final class KeysetToken {
+
+    public static final String SORT_BY_ID = "id";
+    public static final String SORT_BY_AGE = "age";
+
+    private final String sortBy;
+    private final Integer age;
+    private final String personId;
+
+    private KeysetToken(String sortBy, Integer age, String personId) {
+        this.sortBy = sortBy;
+        this.age = age;
+        this.personId = personId;
+    }
+
+    public static KeysetToken byId(String personId) {
+        return new KeysetToken(SORT_BY_ID, null, personId);
+    }
+
+    public static KeysetToken byAge(Integer age, String personId) {
+        return new KeysetToken(SORT_BY_AGE, age, personId);
+    }
+
+    public String encode() {
+        String raw = SORT_BY_AGE.equals(sortBy)
+                ? sortBy + ":" + (age == null ? "" : age) + ":" + personId
+                : sortBy + ":" + personId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static KeysetToken decode(String token) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid continuation token");
+        }
+        String[] parts = raw.split(":", -1);
+        try {
+            if (parts.length == 2 && SORT_BY_ID.equals(parts[0]) && !parts[1].isEmpty()) {
+                return byId(parts[1]);
+            }
+            if (parts.length == 3 && SORT_BY_AGE.equals(parts[0]) && !parts[2].isEmpty()) {
+                return byAge(parts[1].isEmpty() ? null : Integer.valueOf(parts[1]), parts[2]);
+            }
+        } catch (NumberFormatException e) {
+            // falls through to the invalid token error
+        }
+        throw new IllegalArgumentException("Invalid continuation token");
+    }
+}
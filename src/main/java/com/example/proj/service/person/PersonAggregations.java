@@ -0,0 +1,119 @@
+package com.example.proj.service.person;
+
+import com.example.proj.config.mongo.MongoReadRouting;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.aggregation.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * AGGREGATION
+ * Pipelines of the city reports, shared by the blocking and the reactive person services.
+ * Every pipeline starts with a $project : only the fields the report needs go through $unwind / $sort / $group,
+ * instead of whole persons with all their addresses and hobbies.
+ */
+public final class PersonAggregations {
+
+    private PersonAggregations() {
+    }
+
+    // Reports are analytics : routed like them (see MongoReadRouting)
+    public static AggregationOptions options(boolean allowDiskUse, int batchSize, MongoReadRouting readRouting) {
+        return readRouting.analytics(AggregationOptions.builder().allowDiskUse(allowDiskUse).cursorBatchSize(batchSize)).build();
+    }
+
+    // Cities are part of addresses, so we have to deconstruct/(flatten out) - unwind the addresses to get the city
+    // Sort by the age and group by the city
+    // top : how many persons per city, oldest first
+    // topNAccumulator : $topN (MongoDB 5.2+) keeps only `top` persons per city while grouping, without sorting
+    //      every unwound person first. Older servers get $sort + $group/$push + $slice instead.
+    public static Aggregation olderPersonInEachCity(int top, boolean topNAccumulator, AggregationOptions options) {
+        List<AggregationOperation> operations = new ArrayList<>();
+        // ProjectionOperation : "$addresses.city" on the addresses array gives the array of cities of the person
+        operations.add(Aggregation.project("personId", "firstName", "lastName", "age").and("addresses.city").as("city")
+                .andExclude("_id"));
+        // UnwindOperation : Breaks down the cities array into separate documents, duplicating the rest
+        operations.add(Aggregation.unwind("city"));
+
+        if (topNAccumulator) {
+            // GroupOperation : grouping anything accordingly. $topN keeps the `top` oldest persons of each city
+            operations.add(Aggregation.group("city").and("persons", SelectionOperators.Top.top(top)
+                    .sortBy(Sort.by(Sort.Direction.DESC, "age"))
+                    .output(Aggregation.ROOT)));
+            // Spring renders output as an array ([$$ROOT]), every kept person is a one element array : unwrap it
+            operations.add(Aggregation.unwind("persons"));
+        } else {
+            // SortOperation : sort Age By descending order to get the max age.
+            operations.add(Aggregation.sort(Sort.Direction.DESC, "age"));
+            // GroupOperation : every (already trimmed) person of the city, in age order, then only the first `top`
+            operations.add(Aggregation.group("city").push(Aggregation.ROOT).as("persons"));
+            operations.add(Aggregation.project().and("persons").slice(top));
+        }
+
+        // One row per person, with the city it was found in
+        operations.add(Aggregation.unwind("persons"));
+        operations.add(Aggregation.project()
+                .and("_id").as("city")
+                .and("persons.personId").as("personId")
+                .and("persons.firstName").as("firstName")
+                .and("persons.lastName").as("lastName")
+                .and("persons.age").as("age")
+                .andExclude("_id"));
+        operations.add(Aggregation.sort(Sort.by(Sort.Direction.ASC, "city").and(Sort.by(Sort.Direction.DESC, "age"))));
+        return Aggregation.newAggregation(operations).withOptions(options);
+    }
+
+    // limit : only the `limit` most populated cities (null = all of them)
+    public static Aggregation populationByCity(Integer limit, AggregationOptions options) {
+        List<AggregationOperation> operations = new ArrayList<>();
+        // Only the cities go through $unwind, nothing else of the person
+        operations.add(Aggregation.project().and("addresses.city").as("city").andExclude("_id"));
+        operations.add(Aggregation.unwind("city"));
+
+        GroupOperation groupOperation = Aggregation.group("city")
+                .count().as("popCount");
+        operations.add(groupOperation);
+
+        SortOperation sortOperation = Aggregation.sort(Sort.Direction.DESC,"popCount");
+        operations.add(sortOperation);
+        if (limit != null) {
+            operations.add(Aggregation.limit(limit));
+        }
+
+        // Here we can manipulate which fields should be projected/provided (Get only particular fields)
+        ProjectionOperation projectionOperation = Aggregation.project()
+                .andExpression("_id").as("city")
+                .andExpression("popCount").as("count")
+                .andExclude("_id"); // We exclude the id of the document
+        operations.add(projectionOperation);
+
+        // Make sure to get the right order : Issue :: No property 'popCount' found ::
+        return Aggregation.newAggregation(operations).withOptions(options);
+    }
+
+    // city_stats rebuild (see CityStatsServiceImpl) : both reports in one pass, written with $merge so the
+    // view is replaced city by city and never seen empty. refreshedAt tells which cities were not rebuilt.
+    public static Aggregation cityStatsRebuild(String collection, Date refreshedAt) {
+        ProjectionOperation projectionOperation = Aggregation.project("firstName", "lastName", "age")
+                .and("addresses.city").as("city");
+        UnwindOperation unwindOperation = Aggregation.unwind("city");
+        SortOperation sortOperation = Aggregation.sort(Sort.Direction.DESC, "age");
+        GroupOperation groupOperation = Aggregation.group("city")
+                .count().as("population")
+                .first(Aggregation.ROOT).as("oldestPerson");
+        AddFieldsOperation addFieldsOperation = Aggregation.addFields()
+                .addFieldWithValue("refreshedAt", refreshedAt).build();
+        MergeOperation mergeOperation = Aggregation.merge()
+                .intoCollection(collection)
+                .whenMatched(MergeOperation.WhenDocumentsMatch.replaceDocument())
+                .whenNotMatched(MergeOperation.WhenDocumentsDontMatch.insertNewDocument())
+                .build();
+
+        // The sort covers every address of every person, so it may spill to disk on a big collection
+        return Aggregation.newAggregation(projectionOperation, unwindOperation, sortOperation, groupOperation,
+                        addFieldsOperation, mergeOperation)
+                .withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+    }
+}
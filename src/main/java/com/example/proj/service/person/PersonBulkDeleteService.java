@@ -0,0 +1,13 @@
+package com.example.proj.service.person;
+
+import com.example.proj.dto.BulkDeleteRequest;
+import com.example.proj.dto.BulkDeleteResult;
+
+import java.util.function.Consumer;
+
+public interface PersonBulkDeleteService {
+    // Throws IllegalArgumentException for a request delete() would refuse, before anything is deleted
+    void validate(BulkDeleteRequest request);
+
+    BulkDeleteResult delete(BulkDeleteRequest request, Consumer<BulkDeleteResult> progress);
+}
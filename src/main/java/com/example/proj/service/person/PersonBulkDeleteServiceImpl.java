@@ -0,0 +1,142 @@
+package com.example.proj.service.person;
+
+import com.example.proj.cache.PersonCache;
+import com.example.proj.dto.BulkDeleteRequest;
+import com.example.proj.dto.BulkDeleteResult;
+import com.example.proj.model.Person;
+import com.example.proj.service.stats.CityStatsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * NOTE : Bulk delete
+ * One request deletes any number of persons, `batchSize` at a time with deleteMany :
+ *  - ids    : split in batches, each one is deleteMany({_id: {$in: batch}})
+ *  - filter : the same filters as searchPerson (PersonSearchCriteria). The next `batchSize` matching ids are read
+ *             (index only, sorted by _id), then deleted with the filter repeated, so a person changed in between
+ *             is not deleted anymore. Until nothing matches.
+ * Small batches keep every delete short : no long lock, no huge oplog entry, replication keeps up.
+ * `progress` gets the counters after every batch. At the end the person cache is dropped once and city_stats
+ * is rebuilt once, like after a bulk ingest, instead of one incremental update per person.
+ * A request without ids and without filters is refused, it would delete every person. So is a request with both :
+ * it is unclear whether the filters should narrow the ids, and guessing wrong deletes persons nobody asked for.
+ */
+@Service
+public class PersonBulkDeleteServiceImpl implements PersonBulkDeleteService {
+
+    private static final Logger log = LoggerFactory.getLogger(PersonBulkDeleteServiceImpl.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final PersonCache personCache;
+    private final CityStatsService cityStatsService;
+    private final int batchSize;
+
+    public PersonBulkDeleteServiceImpl(MongoTemplate mongoTemplate, PersonCache personCache, CityStatsService cityStatsService,
+                                       @Value("${app.person.bulk-delete.batch-size:1000}") int batchSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.personCache = personCache;
+        this.cityStatsService = cityStatsService;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public void validate(BulkDeleteRequest request) {
+        if (!hasIds(request)) {
+            filter(request);
+        } else if (request.getFirstName() != null || request.getMinAge() != null || request.getMaxAge() != null
+                || request.getCity() != null) {
+            throw new IllegalArgumentException("ids and filters (firstName, minAge, maxAge, city) can't be used together");
+        }
+    }
+
+    @Override
+    public BulkDeleteResult delete(BulkDeleteRequest request, Consumer<BulkDeleteResult> progress) {
+        validate(request);
+        long start = System.nanoTime();
+        BulkDeleteResult result = new BulkDeleteResult();
+        try {
+            if (hasIds(request)) {
+                deleteIds(new ArrayList<>(new LinkedHashSet<>(request.getIds())), result, start, progress);
+            } else {
+                deleteMatching(filter(request), result, start, progress);
+            }
+        } finally {
+            // Also after a failure : the batches done so far are deleted
+            if (result.getDeleted() > 0) {
+                personCache.evictAll();
+                cityStatsService.rebuild();
+            }
+        }
+        result.setDone(true);
+        update(result, start);
+        log.info("Bulk delete : {} persons deleted in {} batches, {} ms ({} docs/sec)",
+                result.getDeleted(), result.getBatches(), result.getElapsedMillis(), (long) result.getDocsPerSecond());
+        return result;
+    }
+
+    private static boolean hasIds(BulkDeleteRequest request) {
+        return request.getIds() != null && !request.getIds().isEmpty();
+    }
+
+    private static Criteria filter(BulkDeleteRequest request) {
+        if ((request.getMinAge() == null) != (request.getMaxAge() == null)) {
+            // searchPerson ignores a lone bound, here that would delete more than asked
+            throw new IllegalArgumentException("minAge and maxAge go together");
+        }
+        List<Criteria> filters = PersonSearchCriteria.of(Optional.ofNullable(request.getFirstName()),
+                Optional.ofNullable(request.getMinAge()), Optional.ofNullable(request.getMaxAge()),
+                Optional.ofNullable(request.getCity()));
+        if (filters.isEmpty()) {
+            throw new IllegalArgumentException("ids or at least one filter (firstName, minAge and maxAge, city) is required");
+        }
+        return PersonSearchCriteria.and(filters);
+    }
+
+    private void deleteIds(List<String> ids, BulkDeleteResult result, long start, Consumer<BulkDeleteResult> progress) {
+        result.setRequested((long) ids.size());
+        for (int from = 0; from < ids.size(); from += batchSize) {
+            List<String> batch = ids.subList(from, Math.min(from + batchSize, ids.size()));
+            deleteBatch(Query.query(Criteria.where("personId").in(batch)), result, start, progress);
+        }
+    }
+
+    private void deleteMatching(Criteria filter, BulkDeleteResult result, long start, Consumer<BulkDeleteResult> progress) {
+        while (true) {
+            Query next = new Query(filter).with(Sort.by(Sort.Direction.ASC, "personId")).limit(batchSize);
+            next.fields().include("personId");
+            List<Object> ids = new ArrayList<>();
+            for (Person person : mongoTemplate.find(next, Person.class)) {
+                ids.add(person.getPersonId());
+            }
+            if (ids.isEmpty()) {
+                return;
+            }
+            deleteBatch(Query.query(new Criteria().andOperator(filter, Criteria.where("personId").in(ids))), result, start, progress);
+        }
+    }
+
+    private void deleteBatch(Query batch, BulkDeleteResult result, long start, Consumer<BulkDeleteResult> progress) {
+        result.setDeleted(result.getDeleted() + mongoTemplate.remove(batch, Person.class).getDeletedCount());
+        result.setBatches(result.getBatches() + 1);
+        update(result, start);
+        progress.accept(result);
+    }
+
+    private static void update(BulkDeleteResult result, long start) {
+        long elapsedNanos = System.nanoTime() - start;
+        result.setElapsedMillis(elapsedNanos / 1_000_000);
+        result.setDocsPerSecond(elapsedNanos == 0 ? 0 : result.getDeleted() * 1_000_000_000d / elapsedNanos);
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.proj.service.person;
+
+import com.example.proj.dto.BulkIngestResult;
+
+import java.io.InputStream;
+
+public interface PersonIngestService {
+    BulkIngestResult ingest(InputStream body);
+}
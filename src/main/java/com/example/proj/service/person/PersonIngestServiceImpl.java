@@ -0,0 +1,208 @@
+package com.example.proj.service.person;
+
+import com.example.proj.cache.PersonCache;
+import com.example.proj.dto.BulkIngestResult;
+import com.example.proj.model.Person;
+import com.example.proj.service.stats.CityStatsService;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import jakarta.annotation.PreDestroy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * NOTE : Bulk ingest
+ * The body (a JSON array or NDJSON) is read one person at a time with a MappingIterator, never as a whole List.
+ * Persons are grouped in batches of `batchSize` and every batch is one unordered bulkWrite :
+ *  - without an id : insert
+ *  - with an id    : replaceOne with upsert, so sending the same file twice doesn't create duplicates
+ * While a batch is written by a writer thread, the next one is already being parsed (at most
+ * `maxInFlightBatches` batches are pending, then reading the body waits).
+ * Unordered means one bad record doesn't stop the rest of its batch, its error is reported with its index.
+ */
+@Service
+public class PersonIngestServiceImpl implements PersonIngestService {
+
+    private static final Logger log = LoggerFactory.getLogger(PersonIngestServiceImpl.class);
+    private static final int MAX_REPORTED_FAILURES = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final PersonCache personCache;
+    private final CityStatsService cityStatsService;
+    private final int batchSize;
+    private final int maxInFlightBatches;
+    private final ExecutorService writers;
+
+    public PersonIngestServiceImpl(MongoTemplate mongoTemplate, ObjectMapper objectMapper, PersonCache personCache,
+                                   CityStatsService cityStatsService,
+                                   @Value("${app.person.bulk.batch-size:1000}") int batchSize,
+                                   @Value("${app.person.bulk.max-in-flight-batches:2}") int maxInFlightBatches) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.personCache = personCache;
+        this.cityStatsService = cityStatsService;
+        this.batchSize = batchSize;
+        this.maxInFlightBatches = maxInFlightBatches;
+        this.writers = Executors.newFixedThreadPool(maxInFlightBatches, new CustomizableThreadFactory("person-ingest-"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writers.shutdown();
+    }
+
+    @Override
+    public BulkIngestResult ingest(InputStream body) {
+        long start = System.nanoTime();
+        BulkIngestResult result = new BulkIngestResult();
+        Semaphore inFlight = new Semaphore(maxInFlightBatches);
+        List<Future<?>> pending = new ArrayList<>();
+
+        List<Person> batch = new ArrayList<>(batchSize);
+        long batchStart = 0;
+        long index = 0;
+        // readValues handles both : a top level JSON array is iterated element by element, and so are NDJSON lines
+        try (MappingIterator<Person> records = objectMapper.readerFor(Person.class).readValues(body)) {
+            while (records.hasNextValue()) {
+                long recordIndex = index++;
+                Person person;
+                try {
+                    person = records.nextValue();
+                } catch (JsonMappingException e) {
+                    // The record is valid JSON but not a Person : skip it, the iterator resyncs on the next one
+                    addFailure(result, recordIndex, null, e.getOriginalMessage());
+                    continue;
+                }
+                if (batch.isEmpty()) {
+                    batchStart = recordIndex;
+                }
+                batch.add(person);
+                if (batch.size() == batchSize) {
+                    pending.add(submit(batch, batchStart, result, inFlight));
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+        } catch (IOException e) {
+            // Broken JSON : there is no way to find the next record, what was read so far is still written
+            result.setAbortedReason("Invalid input after record " + index + " : " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.setAbortedReason("Interrupted");
+        }
+        // The last (partial) batch is written on the request thread, it has nothing left to overlap with
+        if (!batch.isEmpty()) {
+            writeBatch(batch, batchStart, result);
+        }
+        waitFor(pending);
+        result.setReceived(index);
+
+        // Upserts can replace any cached person, so the whole person cache is dropped once
+        personCache.evictAll();
+        // Same for city_stats : one rebuild is cheaper than thousands of incremental updates
+        if (result.getInserted() + result.getUpserted() > 0) {
+            cityStatsService.rebuild();
+        }
+
+        long elapsedNanos = System.nanoTime() - start;
+        long written = result.getInserted() + result.getUpserted();
+        result.setElapsedMillis(elapsedNanos / 1_000_000);
+        result.setDocsPerSecond(elapsedNanos == 0 ? 0 : written * 1_000_000_000d / elapsedNanos);
+        log.info("Bulk ingest : {} received, {} written, {} failed in {} ms ({} docs/sec)",
+                result.getReceived(), written, result.getFailed(), result.getElapsedMillis(), (long) result.getDocsPerSecond());
+        return result;
+    }
+
+    private Future<?> submit(List<Person> batch, long batchStart, BulkIngestResult result, Semaphore inFlight) throws InterruptedException {
+        inFlight.acquire();
+        return writers.submit(() -> {
+            try {
+                writeBatch(batch, batchStart, result);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private void writeBatch(List<Person> batch, long batchStart, BulkIngestResult result) {
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Person.class);
+        for (Person person : batch) {
+            if (person.getPersonId() == null) {
+                bulkOperations.insert(person);
+            } else {
+                bulkOperations.replaceOne(Query.query(Criteria.where("personId").is(person.getPersonId())),
+                        person, FindAndReplaceOptions.options().upsert());
+            }
+        }
+
+        BulkWriteResult written;
+        List<BulkWriteError> errors = Collections.emptyList();
+        try {
+            written = bulkOperations.execute();
+        } catch (BulkOperationException e) {
+            // Some writes failed : the others are done, the result still counts them
+            written = e.getResult();
+            errors = e.getErrors();
+        } catch (RuntimeException e) {
+            // The whole batch failed (network, timeout ..), every record of it is reported
+            for (int i = 0; i < batch.size(); i++) {
+                addFailure(result, batchStart + i, batch.get(i).getPersonId(), e.getMessage());
+            }
+            return;
+        }
+
+        synchronized (result) {
+            result.setInserted(result.getInserted() + written.getInsertedCount());
+            result.setUpserted(result.getUpserted() + written.getMatchedCount() + written.getUpserts().size());
+        }
+        for (BulkWriteError error : errors) {
+            addFailure(result, batchStart + error.getIndex(), batch.get(error.getIndex()).getPersonId(), error.getMessage());
+        }
+    }
+
+    private static void addFailure(BulkIngestResult result, long index, String personId, String message) {
+        synchronized (result) {
+            result.setFailed(result.getFailed() + 1);
+            if (result.getFailures().size() < MAX_REPORTED_FAILURES) {
+                result.getFailures().add(new BulkIngestResult.Failure(index, personId, message));
+            }
+        }
+    }
+
+    private static void waitFor(List<Future<?>> pending) {
+        for (Future<?> future : pending) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                log.error("Bulk ingest batch failed", e.getCause());
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.proj.service.person;
+
+import com.example.proj.dto.PersonPatch;
+import com.example.proj.model.Address;
+import com.example.proj.model.Person;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * NOTE : Partial updates (PATCH)
+ * A patch becomes one update of the fields it names ($set, $inc, $push, $pull) instead of a save() of the whole
+ * document : the request, the write and the oplog entry only carry what changed, and two patches of different
+ * fields don't overwrite each other. Every patch also does $inc version, with expectedVersion the update only
+ * matches that version (a person without a version is version 0).
+ * Shared by the blocking and the reactive service.
+ */
+public final class PersonPatches {
+
+    private PersonPatches() {
+    }
+
+    public static Update toUpdate(PersonPatch patch) {
+        if (patch.getAge() != null && patch.getIncAge() != null) {
+            throw new IllegalArgumentException("age and incAge can't be used together");
+        }
+        if (notEmpty(patch.getAddHobbies()) && notEmpty(patch.getRemoveHobbies())) {
+            throw new IllegalArgumentException("addHobbies and removeHobbies can't be used together");
+        }
+        if (notEmpty(patch.getAddAddresses()) && notEmpty(patch.getRemoveAddresses())) {
+            throw new IllegalArgumentException("addAddresses and removeAddresses can't be used together");
+        }
+
+        Update update = new Update();
+        if (patch.getFirstName() != null) {
+            // Not a save, PersonNormalizationCallback doesn't run : the lowercase copy is set here
+            update.set("firstName", patch.getFirstName())
+                    .set("firstNameLower", patch.getFirstName().toLowerCase(Locale.ROOT));
+        }
+        if (patch.getLastName() != null) {
+            update.set("lastName", patch.getLastName());
+        }
+        if (patch.getAge() != null) {
+            update.set("age", patch.getAge());
+        }
+        if (patch.getIncAge() != null) {
+            update.inc("age", patch.getIncAge());
+        }
+        if (notEmpty(patch.getAddHobbies())) {
+            update.push("hobbies").each(patch.getAddHobbies().toArray());
+        }
+        if (notEmpty(patch.getRemoveHobbies())) {
+            update.pullAll("hobbies", patch.getRemoveHobbies().toArray());
+        }
+        if (notEmpty(patch.getAddAddresses())) {
+            update.push("addresses").each(patch.getAddAddresses().toArray());
+        }
+        if (notEmpty(patch.getRemoveAddresses())) {
+            update.pull("addresses", addressMatch(patch.getRemoveAddresses()));
+        }
+        if (update.getUpdateObject().isEmpty()) {
+            throw new IllegalArgumentException("Nothing to patch");
+        }
+        return update.inc("version", 1);
+    }
+
+    // Patches that can move a person in city_stats (population, oldest person)
+    public static boolean changesCityStats(PersonPatch patch) {
+        return patch.getFirstName() != null || patch.getLastName() != null || patch.getAge() != null
+                || patch.getIncAge() != null || notEmpty(patch.getAddAddresses()) || notEmpty(patch.getRemoveAddresses());
+    }
+
+    // The person, and only in this version when one is given
+    public static Query query(String personId, Long version) {
+        Criteria criteria = Criteria.where("personId").is(personId);
+        if (version != null) {
+            criteria = version == 0
+                    ? criteria.orOperator(Criteria.where("version").is(0L), Criteria.where("version").exists(false))
+                    : criteria.and("version").is(version);
+        }
+        return Query.query(criteria);
+    }
+
+    public static long versionOf(Person person) {
+        return person.getVersion() == null ? 0 : person.getVersion();
+    }
+
+    // $pull with a condition : every address having all the fields given, {$or: [..]} for several
+    private static Document addressMatch(List<Address> addresses) {
+        List<Document> matches = new ArrayList<>();
+        for (Address address : addresses) {
+            Document match = new Document();
+            if (address.getAddress1() != null) {
+                match.append("address1", address.getAddress1());
+            }
+            if (address.getAddress2() != null) {
+                match.append("address2", address.getAddress2());
+            }
+            if (address.getCity() != null) {
+                match.append("city", address.getCity());
+            }
+            if (match.isEmpty()) {
+                // Would remove every address
+                throw new IllegalArgumentException("removeAddresses needs at least one field per address");
+            }
+            matches.add(match);
+        }
+        return matches.size() == 1 ? matches.get(0) : new Document("$or", matches);
+    }
+
+    private static boolean notEmpty(List<?> list) {
+        return list != null && !list.isEmpty();
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.proj.service.person;
+
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * NOTE : Filters of the person search
+ * Shared by the page based search and the keyset search, so both always filter the same way.
+ */
+public final class PersonSearchCriteria {
+
+    private PersonSearchCriteria() {
+    }
+
+    public static List<Criteria> of(Optional<String> firstName, Optional<Integer> minAge, Optional<Integer> maxAge, Optional<String> city) {
+        List<Criteria> criteria = new ArrayList<>();
+
+        // Case insensitive prefix match (ASD,asd,AsD) : an anchored regex on the lowercase copy of firstName.
+        // Unlike regex(firstName,"i") this one can walk the firstNameLower index instead of scanning every person.
+        if (firstName.isPresent()) {
+            criteria.add(Criteria.where("firstNameLower").regex("^" + escapeRegex(firstName.get().toLowerCase(Locale.ROOT))));
+        }
+        // tl ,gt same as we did in mongoRepository
+        if (minAge.isPresent() && maxAge.isPresent()) {
+            criteria.add(Criteria.where("age").gt(minAge.get()).lt(maxAge.get()));
+        }
+        // "is" : should match exactly to the value
+        if (city.isPresent()) {
+            criteria.add(Criteria.where("addresses.city").is(city.get()));
+        }
+        return criteria;
+    }
+
+    // Escapes regex symbols one by one (not with \Q..\E), so MongoDB still sees a simple prefix it can use with an index
+    static String escapeRegex(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if ("\\^$.|?*+()[]{}".indexOf(c) >= 0) {
+                escaped.append('\\');
+            }
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    // new Criteria().andOperator(...) : creates a new criteria that combine all the criteria through AND operator,
+    //      that means all the criteria should be satisfied to get the results documents.
+    // andOperator : requires an array of criteria therefore we convert the List of criteria back to array
+    //      criteria.toArray(new Criteria[0])
+    public static Criteria and(List<Criteria> criteria) {
+        return new Criteria().andOperator(criteria.toArray(new Criteria[0]));
+    }
+}
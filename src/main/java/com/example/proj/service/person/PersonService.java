@@ -1,27 +1,43 @@
 package com.example.proj.service.person;
 
+import com.example.proj.dto.CityPopulation;
+import com.example.proj.dto.OldestPersonInCity;
+import com.example.proj.dto.PersonPatch;
+import com.example.proj.dto.PersonSlice;
 import com.example.proj.model.Person;
-import org.bson.Document;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 public interface PersonService {
     Person createPerson(Person person);
 
     List<Person> getPersons();
 
+    long streamPersons(Consumer<Person> consumer);
+
     Person getByFirstName(String firstName);
 
+    Person getPersonById(String personId);
+
+    Map<String, Object> getCacheStats();
+
     Person deletePersonById(String personId);
 
+    Person patchPerson(String personId, PersonPatch patch);
+
     List<Person> getPersonByAge(Integer minAge, Integer maxAge, boolean includeAllFields);
 
     Page<Person> searchPerson(Optional<String> firstName, Optional<Integer> minAge, Optional<Integer> maxAge, Optional<String> city, Pageable pageable);
 
-    List<Document> getOlderPersonInEachCity();
+    PersonSlice searchPersonKeyset(Optional<String> firstName, Optional<Integer> minAge, Optional<Integer> maxAge, Optional<String> city,
+                                   String sortBy, String after, int size, String countMode);
+
+    List<OldestPersonInCity> getOlderPersonInEachCity(int top);
 
-    List<Document> getPopulationByCity();
+    List<CityPopulation> getPopulationByCity(Integer limit);
 }
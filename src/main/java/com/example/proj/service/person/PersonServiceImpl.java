@@ -1,34 +1,115 @@
 package com.example.proj.service.person;
 
+import com.example.proj.cache.PersonCache;
+import com.example.proj.cache.SingleFlight;
+import com.example.proj.config.mongo.MongoReadRouting;
+import com.example.proj.config.mongo.MongoServerFeatures;
+import com.example.proj.dto.CityPopulation;
+import com.example.proj.dto.OldestPersonInCity;
+import com.example.proj.dto.PersonPatch;
+import com.example.proj.dto.PersonSlice;
 import com.example.proj.model.Person;
 import com.example.proj.repository.PersonRepository;
-import org.bson.Document;
+import com.example.proj.service.stats.CityStatsService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
-import org.springframework.data.mongodb.core.aggregation.*;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.data.support.PageableExecutionUtils;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class PersonServiceImpl implements PersonService {
 
+    private static final int MAX_PATCH_ATTEMPTS = 5;
+
     private final PersonRepository personRepository;
     private final MongoTemplate mongoTemplate;
+    private final PersonCache personCache;
+    private final CityStatsService cityStatsService;
+    private final MongoServerFeatures serverFeatures;
+    private final MongoReadRouting readRouting;
+    private final int streamBatchSize;
+    private final AggregationOptions reportOptions;
+    private final SingleFlight byFirstNameFlight;
+    private final SingleFlight byAgeFlight;
 
-    public PersonServiceImpl(PersonRepository personRepository, MongoTemplate mongoTemplate) {
+    public PersonServiceImpl(PersonRepository personRepository, MongoTemplate mongoTemplate, PersonCache personCache,
+                             CityStatsService cityStatsService, MongoServerFeatures serverFeatures,
+                             MongoReadRouting readRouting, MeterRegistry meterRegistry,
+                             @Value("${app.person.stream.batch-size:500}") int streamBatchSize,
+                             @Value("${app.person.reports.allow-disk-use:true}") boolean reportAllowDiskUse,
+                             @Value("${app.person.reports.batch-size:500}") int reportBatchSize,
+                             @Value("${app.single-flight.person.timeout:5s}") Duration singleFlightTimeout) {
         this.personRepository = personRepository;
         this.mongoTemplate = mongoTemplate;
+        this.personCache = personCache;
+        this.cityStatsService = cityStatsService;
+        this.serverFeatures = serverFeatures;
+        this.readRouting = readRouting;
+        this.streamBatchSize = streamBatchSize;
+        this.reportOptions = PersonAggregations.options(reportAllowDiskUse, reportBatchSize, readRouting);
+        this.byFirstNameFlight = new SingleFlight("person.byFirstName", singleFlightTimeout.toMillis(), meterRegistry);
+        this.byAgeFlight = new SingleFlight("person.byAge", singleFlightTimeout.toMillis(), meterRegistry);
     }
 
+    // The cache is invalidated after the write, so a concurrent read can't put the old version back
+    // With an existing id the person is replaced (see replacePerson), which returns the stored version
+    // in the same round trip : the cache drops its old firstName and city_stats can move it
     @Override
     public Person createPerson(Person person) {
-        return personRepository.save(person);
+        Person previous = null;
+        Person savedPerson = person;
+        if (person.getPersonId() == null) {
+            person.setVersion(null);
+            savedPerson = personRepository.save(person);
+        } else {
+            previous = replacePerson(person);
+        }
+        personCache.evict(previous, savedPerson);
+        cityStatsService.personSaved(previous, savedPerson);
+        return savedPerson;
+    }
+
+    // The version is not taken from the client : a replace is stored as the next version of the stored person,
+    // so a client holding the version read before can't patch over it (expectedVersion). Only that stored version
+    // is replaced (a concurrent change in between : read again). Returns the person replaced, null when it was new.
+    private Person replacePerson(Person person) {
+        for (int attempt = 0; attempt < MAX_PATCH_ATTEMPTS; attempt++) {
+            Optional<Person> stored = personRepository.findById(person.getPersonId());
+            if (stored.isEmpty()) {
+                person.setVersion(null);
+                try {
+                    mongoTemplate.insert(person);
+                    return null;
+                } catch (DuplicateKeyException e) {
+                    // Created meanwhile : replaced below
+                    continue;
+                }
+            }
+            long version = PersonPatches.versionOf(stored.get());
+            person.setVersion(version + 1);
+            Person previous = mongoTemplate.findAndReplace(PersonPatches.query(person.getPersonId(), version), person);
+            if (previous != null) {
+                return previous;
+            }
+        }
+        throw new IllegalStateException("Could not replace person " + person.getPersonId() + ", it keeps changing");
     }
 
     @Override
@@ -41,9 +122,34 @@ public class PersonServiceImpl implements PersonService {
         }
     }
 
+    /**
+     * NOTE : Streaming instead of findAll()
+     * mongoTemplate.stream(..) keeps a cursor open and fetches `streamBatchSize` documents per getMore,
+     * each person is handed to the consumer and can be garbage collected right after,
+     * so memory stays flat whatever the size of the collection.
+     * The consumer writes to the response, when the client reads slowly the write blocks and so does the cursor.
+     */
+    @Override
+    public long streamPersons(Consumer<Person> consumer) {
+        // A full scan : an analytics read, kept off the primary (see MongoReadRouting)
+        Query query = readRouting.analytics(new Query().cursorBatchSize(streamBatchSize));
+        long count = 0;
+        try (Stream<Person> persons = mongoTemplate.stream(query, Person.class)) {
+            Iterator<Person> iterator = persons.iterator();
+            while (iterator.hasNext()) {
+                consumer.accept(iterator.next());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // Identical lookups at the same moment share one cache load (see SingleFlight) : this also covers
+    // "Person Not Found", which the cache never keeps, so a burst of misses is one query instead of one each
     @Override
     public Person getByFirstName(String firstName) {
-        Optional<Person> byFirstName = personRepository.findByFirstName(firstName);
+        Optional<Person> byFirstName = byFirstNameFlight.execute(firstName,
+                () -> personCache.getByFirstName(firstName, personRepository::findByFirstName));
         if (byFirstName.isPresent()) {
             return byFirstName.get();
         } else {
@@ -52,10 +158,9 @@ public class PersonServiceImpl implements PersonService {
     }
 
     @Override
-    public Person deletePersonById(String personId) {
-        Optional<Person> byId = personRepository.findById(personId);
+    public Person getPersonById(String personId) {
+        Optional<Person> byId = personCache.getById(personId, personRepository::findById);
         if (byId.isPresent()) {
-            personRepository.deleteById(byId.get().getPersonId());
             return byId.get();
         } else {
             throw new RuntimeException("Person Not Found");
@@ -63,13 +168,76 @@ public class PersonServiceImpl implements PersonService {
     }
 
     @Override
-    public List<Person> getPersonByAge(Integer minAge, Integer maxAge, boolean includeAllFields) {
-        List<Person> personListByAge;
-        if (includeAllFields) {
-            personListByAge = personRepository.findPersonByAge(minAge, maxAge);
+    public Map<String, Object> getCacheStats() {
+        Map<String, Object> stats = personCache.stats();
+        stats.put("singleFlight", Map.of("byFirstName", byFirstNameFlight.stats(), "byAge", byAgeFlight.stats()));
+        return stats;
+    }
+
+    // findAndRemove : one round trip, and atomic, the person returned is exactly the one that was deleted
+    // (two concurrent deletes of the same id : one gets the person, the other "Person Not Found")
+    @Override
+    public Person deletePersonById(String personId) {
+        Person deleted = mongoTemplate.findAndRemove(Query.query(Criteria.where("personId").is(personId)), Person.class);
+        if (deleted != null) {
+            personCache.evict(deleted);
+            cityStatsService.personDeleted(deleted);
+            return deleted;
         } else {
-            personListByAge = personRepository.findPersonByAgeFieldIncludingOnly(minAge, maxAge);
+            throw new RuntimeException("Person Not Found");
         }
+    }
+
+    // PATCH : one findAndModify of the fields in the patch (see PersonPatches), it returns the patched person.
+    // When the person before is needed (a rename : the cache drops the old firstName, or city_stats has to move it),
+    // the stored version is read first and only that version is patched, so the person before and after are exact
+    // (a concurrent change in between : read again).
+    @Override
+    public Person patchPerson(String personId, PersonPatch patch) {
+        Update update = PersonPatches.toUpdate(patch);
+        FindAndModifyOptions returnNew = FindAndModifyOptions.options().returnNew(true);
+        boolean needsPrevious = patch.getFirstName() != null
+                || (cityStatsService.isEnabled() && PersonPatches.changesCityStats(patch));
+        if (!needsPrevious) {
+            Person patched = mongoTemplate.findAndModify(PersonPatches.query(personId, patch.getExpectedVersion()),
+                    update, returnNew, Person.class);
+            if (patched == null) {
+                throw patchMissed(personId, patch.getExpectedVersion());
+            }
+            personCache.evict(patched);
+            return patched;
+        }
+        for (int attempt = 0; attempt < MAX_PATCH_ATTEMPTS; attempt++) {
+            Person previous = personRepository.findById(personId).orElseThrow(() -> new RuntimeException("Person Not Found"));
+            long version = PersonPatches.versionOf(previous);
+            if (patch.getExpectedVersion() != null && patch.getExpectedVersion() != version) {
+                throw patchMissed(personId, patch.getExpectedVersion());
+            }
+            Person patched = mongoTemplate.findAndModify(PersonPatches.query(personId, version), update, returnNew, Person.class);
+            if (patched != null) {
+                personCache.evict(previous, patched);
+                cityStatsService.personSaved(previous, patched);
+                return patched;
+            }
+        }
+        throw new IllegalStateException("Could not patch person " + personId + ", it keeps changing");
+    }
+
+    // Nothing was patched : the person is gone, or it is not in the expected version anymore
+    private RuntimeException patchMissed(String personId, Long expectedVersion) {
+        if (expectedVersion != null && mongoTemplate.exists(Query.query(Criteria.where("personId").is(personId)), Person.class)) {
+            return new OptimisticLockingFailureException("Person " + personId + " is not in version " + expectedVersion + " anymore");
+        }
+        return new RuntimeException("Person Not Found");
+    }
+
+    // Not cached (a range can be large), identical concurrent requests still share one query
+    @Override
+    public List<Person> getPersonByAge(Integer minAge, Integer maxAge, boolean includeAllFields) {
+        List<Person> personListByAge = byAgeFlight.execute(minAge + ":" + maxAge + ":" + includeAllFields, () ->
+                includeAllFields
+                        ? personRepository.findPersonByAge(minAge, maxAge)
+                        : personRepository.findPersonByAgeFieldIncludingOnly(minAge, maxAge));
         if (!personListByAge.isEmpty()) {
             return personListByAge;
         } else {
@@ -85,29 +253,13 @@ public class PersonServiceImpl implements PersonService {
     // Best case scenarios to use this is when you use for Searching and Filtering and complex scenarios
     @Override
     public Page<Person> searchPerson(Optional<String> firstName, Optional<Integer> minAge, Optional<Integer> maxAge, Optional<String> city, Pageable pageable) {
-        Query query = new Query().with(pageable);
-        List<Criteria> criteria = new ArrayList<>();
+        // Search reads from a secondary when there is one, the count runs on the same query so it follows
+        Query query = readRouting.analytics(new Query().with(pageable));
+        List<Criteria> criteria = PersonSearchCriteria.of(firstName, minAge, maxAge, city);
 
-        // regex(firstName.get(),"i")) : This is Regex that matches case sensitivity. ASD,asd,AsD
-        if (firstName.isPresent()) {
-            criteria.add(Criteria.where("firstName").regex(firstName.get(), "i"));
-        }
-        // tl ,gt same as we did in mongoRepository
-        if (minAge.isPresent() && maxAge.isPresent()) {
-            criteria.add(Criteria.where("age").gt(minAge.get()).lt(maxAge.get()));
-        }
-        // "is" : should match exactly to the value
-        if (city.isPresent()) {
-            criteria.add(Criteria.where("addresses.city").is(city.get()));
-        }
-
-        // addCriteria : add  the specified criteria to the query object
-        // new Criteria().andOperator(...) : creates a new criteria that combine all the criteria through AND operator,
-        //      that means all the criteria should be satisfied to get the results documents.
-        // andOperator : requires an array of criteria therefore we convert the List of criteria back to array
-        //      criteria.toArray(new Criteria[0])
+        // addCriteria : add  the specified criteria to the query object (see PersonSearchCriteria.and)
         if (!criteria.isEmpty()) {
-            query.addCriteria(new Criteria().andOperator(criteria.toArray(new Criteria[0])));
+            query.addCriteria(PersonSearchCriteria.and(criteria));
         }
 
         // PageableExecutionUtils.getPage() : create a pagination result of Person
@@ -129,55 +281,112 @@ public class PersonServiceImpl implements PersonService {
     }
 
     /**
-     * AGGREGATION
+     * NOTE : Keyset (seek) pagination
+     * Instead of skip/limit, the query starts right after the last person of the previous page
+     * (_id > lastId, or (age, _id) > (lastAge, lastId)), so with an index on the sort key
+     * page 10,000 costs the same as page 1. One extra document is fetched to know if there is a next page.
+     * The total count is optional : "estimated" uses the collection metadata when there are no filters.
      */
-    // Cities are part of addresses, so we have to deconstruct/(flatten out) - unwind the addresses to get the city
-    // Sort by the age and group by the city
-    // Todo : Use different types of aggregations
     @Override
-    public List<Document> getOlderPersonInEachCity() {
-        // UnwindOperation : Breaks down addresses array into separate documents, duplicating the rest
-        UnwindOperation unwindOperation = Aggregation.unwind("addresses");
-        // SortOperation : sort Age By descending order to get the max age.
-        SortOperation sortOperation = Aggregation.sort(Sort.Direction.DESC, "age");
-        // GroupOperation : grouping anything accordingly.
-        // first/as we can provide field ref and assignment we want to return.
-        GroupOperation groupOperation = Aggregation.group("addresses.city") // Group by docs by city, each city has its oldest person
-                .first(Aggregation.ROOT)         // Aggregation.Root refers to the entire document, "firstName" refers to firstName in Person
-                .as("oldestPerson");       // assigns to a variable "oldestPerson"
-        // Aggregation.ROOT : when you use this the _id will get a timestamp,
-        //          so you have to remove this and add attributes manually to do otherwise
-        Aggregation aggregation = Aggregation.newAggregation(unwindOperation,sortOperation,groupOperation);
-
-        List<Document> personList = mongoTemplate.aggregate(aggregation,Person.class,Document.class).getMappedResults();
-
-        return personList;
-    }
-
-    @Override
-    public List<Document> getPopulationByCity() {
-
-        UnwindOperation unwindOperation = Aggregation.unwind("addresses");
-
-        GroupOperation groupOperation = Aggregation.group("addresses.city")
-                .count().as("popCount");
-
-        SortOperation sortOperation = Aggregation.sort(Sort.Direction.DESC,"popCount");
+    public PersonSlice searchPersonKeyset(Optional<String> firstName, Optional<Integer> minAge, Optional<Integer> maxAge, Optional<String> city,
+                                          String sortBy, String after, int size, String countMode) {
+        if (!KeysetToken.SORT_BY_ID.equals(sortBy) && !KeysetToken.SORT_BY_AGE.equals(sortBy)) {
+            throw new IllegalArgumentException("sortBy should be 'id' or 'age'");
+        }
+        if (size < 1) {
+            // limit(size + 1) would still find a "next page" and there would be no last person to continue after
+            throw new IllegalArgumentException("size should be at least 1");
+        }
+        List<Criteria> filters = PersonSearchCriteria.of(firstName, minAge, maxAge, city);
+        List<Criteria> criteria = new ArrayList<>(filters);
+        if (after != null) {
+            KeysetToken token = KeysetToken.decode(after);
+            if (!token.getSortBy().equals(sortBy)) {
+                throw new IllegalArgumentException("The continuation token was created for sortBy=" + token.getSortBy());
+            }
+            criteria.add(seekCriteria(token));
+        }
 
-        // Here we can manipulate which fields should be projected/provided (Get only particular fields)
-        ProjectionOperation projectionOperation = Aggregation.project()
-                .andExpression("_id").as("city")
-                .andExpression("popCount").as("count")
-                .andExclude("_id"); // We exclude the id of the document
+        Query query = readRouting.analytics(new Query());
+        if (!criteria.isEmpty()) {
+            query.addCriteria(PersonSearchCriteria.and(criteria));
+        }
+        Sort sort = KeysetToken.SORT_BY_AGE.equals(sortBy)
+                ? Sort.by(Sort.Direction.ASC, "age", "personId")
+                : Sort.by(Sort.Direction.ASC, "personId");
+        query.with(sort).limit(size + 1);
 
+        List<Person> persons = mongoTemplate.find(query, Person.class);
+        boolean hasNext = persons.size() > size;
+        if (hasNext) {
+            persons = persons.subList(0, size);
+        }
+        String nextToken = null;
+        if (hasNext) {
+            Person last = persons.get(persons.size() - 1);
+            nextToken = KeysetToken.SORT_BY_AGE.equals(sortBy)
+                    ? KeysetToken.byAge(last.getAge(), last.getPersonId()).encode()
+                    : KeysetToken.byId(last.getPersonId()).encode();
+        }
 
-        // Make sure to get the right order : Issue :: No property 'popCount' found ::
-        Aggregation aggregation = Aggregation.newAggregation(unwindOperation,groupOperation,sortOperation,projectionOperation);
+        PersonSlice slice = new PersonSlice(persons, hasNext, nextToken, null, null);
+        if ("exact".equals(countMode) || ("estimated".equals(countMode) && !filters.isEmpty())) {
+            Query countQuery = readRouting.analytics(filters.isEmpty() ? new Query() : new Query(PersonSearchCriteria.and(filters)));
+            slice.setTotalCount(mongoTemplate.count(countQuery, Person.class));
+            slice.setCountEstimated(false);
+        } else if ("estimated".equals(countMode)) {
+            slice.setTotalCount(mongoTemplate.estimatedCount(Person.class));
+            slice.setCountEstimated(true);
+        }
+        return slice;
+    }
 
-        List<Document> personList = mongoTemplate.aggregate(aggregation,Person.class,Document.class).getMappedResults();
+    // Everything strictly after the last (age, _id) of the previous page.
+    // Persons without an age sort first (null < numbers), so they need their own branch.
+    private static Criteria seekCriteria(KeysetToken token) {
+        Object lastId = ObjectId.isValid(token.getPersonId()) ? new ObjectId(token.getPersonId()) : token.getPersonId();
+        if (KeysetToken.SORT_BY_ID.equals(token.getSortBy())) {
+            return Criteria.where("personId").gt(lastId);
+        }
+        if (token.getAge() == null) {
+            return new Criteria().orOperator(
+                    Criteria.where("age").is(null).and("personId").gt(lastId),
+                    Criteria.where("age").ne(null));
+        }
+        return new Criteria().orOperator(
+                Criteria.where("age").gt(token.getAge()),
+                Criteria.where("age").is(token.getAge()).and("personId").gt(lastId));
+    }
 
-        return personList;
+    /**
+     * AGGREGATION
+     */
+    // The pipelines are built in PersonAggregations, so the reactive service runs exactly the same ones
+    // With city_stats enabled both reports are read from the materialized view instead (see CityStatsServiceImpl),
+    // it only keeps the oldest person of each city, more than one per city always runs the pipeline.
+    // The results are mapped straight to the report DTOs, no Document in between.
+    @Override
+    public List<OldestPersonInCity> getOlderPersonInEachCity(int top) {
+        if (top < 1) {
+            throw new IllegalArgumentException("top should be at least 1");
+        }
+        if (top == 1 && cityStatsService.isEnabled()) {
+            return cityStatsService.getOldestPersonInEachCity();
+        }
+        return mongoTemplate.aggregate(PersonAggregations.olderPersonInEachCity(top, serverFeatures.supportsTopN(), reportOptions),
+                Person.class, OldestPersonInCity.class).getMappedResults();
+    }
 
+    @Override
+    public List<CityPopulation> getPopulationByCity(Integer limit) {
+        if (limit != null && limit < 1) {
+            throw new IllegalArgumentException("limit should be at least 1");
+        }
+        if (cityStatsService.isEnabled()) {
+            return cityStatsService.getPopulationByCity(limit);
+        }
+        return mongoTemplate.aggregate(PersonAggregations.populationByCity(limit, reportOptions),
+                Person.class, CityPopulation.class).getMappedResults();
     }
 
 
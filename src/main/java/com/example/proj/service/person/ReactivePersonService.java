@@ -0,0 +1,34 @@
+package com.example.proj.service.person;
+
+import com.example.proj.dto.CityPopulation;
+import com.example.proj.dto.OldestPersonInCity;
+import com.example.proj.dto.PersonPatch;
+import com.example.proj.model.Person;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Optional;
+
+public interface ReactivePersonService {
+    Mono<Person> createPerson(Person person);
+
+    Flux<Person> getPersons();
+
+    Mono<Person> getByFirstName(String firstName);
+
+    Mono<Person> getPersonById(String personId);
+
+    Mono<Person> deletePersonById(String personId);
+
+    Mono<Person> patchPerson(String personId, PersonPatch patch);
+
+    Flux<Person> getPersonByAge(Integer minAge, Integer maxAge, boolean includeAllFields);
+
+    Mono<Page<Person>> searchPerson(Optional<String> firstName, Optional<Integer> minAge, Optional<Integer> maxAge, Optional<String> city, Pageable pageable);
+
+    Flux<OldestPersonInCity> getOlderPersonInEachCity(int top);
+
+    Flux<CityPopulation> getPopulationByCity(Integer limit);
+}
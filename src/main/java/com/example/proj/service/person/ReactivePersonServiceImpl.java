@@ -0,0 +1,211 @@
+package com.example.proj.service.person;
+
+import com.example.proj.cache.PersonCache;
+import com.example.proj.config.mongo.MongoReadRouting;
+import com.example.proj.config.mongo.MongoServerFeatures;
+import com.example.proj.dto.CityPopulation;
+import com.example.proj.dto.OldestPersonInCity;
+import com.example.proj.dto.PersonPatch;
+import com.example.proj.model.Person;
+import com.example.proj.repository.ReactivePersonRepository;
+import com.example.proj.service.stats.CityStatsService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * NOTE : Reactive version of PersonServiceImpl
+ * Same queries, same pipelines (PersonSearchCriteria, PersonAggregations), but nothing blocks :
+ * a request waiting on MongoDB holds no thread, so a few event loop threads serve all connections.
+ * Errors are signalled with Mono.error instead of being thrown.
+ * city_stats is kept up to date like in PersonServiceImpl. CityStatsService is blocking (MongoTemplate),
+ * its updates run on the boundedElastic scheduler, off the event loop.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactivePersonServiceImpl implements ReactivePersonService {
+
+    private static final int MAX_PATCH_ATTEMPTS = 5;
+
+    private final ReactivePersonRepository personRepository;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final PersonCache personCache;
+    private final CityStatsService cityStatsService;
+    private final MongoServerFeatures serverFeatures;
+    private final MongoReadRouting readRouting;
+    private final AggregationOptions reportOptions;
+
+    public ReactivePersonServiceImpl(ReactivePersonRepository personRepository, ReactiveMongoTemplate mongoTemplate, PersonCache personCache,
+                                     CityStatsService cityStatsService, MongoServerFeatures serverFeatures, MongoReadRouting readRouting,
+                                     @Value("${app.person.reports.allow-disk-use:true}") boolean reportAllowDiskUse,
+                                     @Value("${app.person.reports.batch-size:500}") int reportBatchSize) {
+        this.personRepository = personRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.personCache = personCache;
+        this.cityStatsService = cityStatsService;
+        this.serverFeatures = serverFeatures;
+        this.readRouting = readRouting;
+        this.reportOptions = PersonAggregations.options(reportAllowDiskUse, reportBatchSize, readRouting);
+    }
+
+    @Override
+    public Mono<Person> createPerson(Person person) {
+        if (person.getPersonId() == null) {
+            person.setVersion(null);
+            return personRepository.save(person)
+                    .doOnNext(personCache::evict)
+                    .flatMap(saved -> updateCityStats(() -> cityStatsService.personSaved(null, saved)).thenReturn(saved));
+        }
+        // Replaces the stored version of the person as its next version, see PersonServiceImpl.replacePerson
+        return personRepository.findById(person.getPersonId())
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMap(stored -> {
+                    if (stored.isEmpty()) {
+                        person.setVersion(null);
+                        // Created meanwhile : empty, repeated below
+                        return mongoTemplate.insert(person)
+                                .map(inserted -> Optional.<Person>empty())
+                                .onErrorResume(DuplicateKeyException.class, e -> Mono.empty());
+                    }
+                    long version = PersonPatches.versionOf(stored.get());
+                    person.setVersion(version + 1);
+                    // Empty when the person changed since it was read : repeated below
+                    return mongoTemplate.findAndReplace(PersonPatches.query(person.getPersonId(), version), person)
+                            .map(Optional::of);
+                })
+                .repeatWhenEmpty(MAX_PATCH_ATTEMPTS - 1, repeats -> repeats)
+                .flatMap(previous -> {
+                    personCache.evict(previous.orElse(null), person);
+                    return updateCityStats(() -> cityStatsService.personSaved(previous.orElse(null), person)).thenReturn(person);
+                });
+    }
+
+    @Override
+    public Flux<Person> getPersons() {
+        return personRepository.findAll();
+    }
+
+    @Override
+    public Mono<Person> getByFirstName(String firstName) {
+        return personRepository.findByFirstName(firstName).switchIfEmpty(notFound());
+    }
+
+    @Override
+    public Mono<Person> getPersonById(String personId) {
+        return personRepository.findById(personId).switchIfEmpty(notFound());
+    }
+
+    @Override
+    public Mono<Person> deletePersonById(String personId) {
+        // findAndRemove : one round trip, see PersonServiceImpl.deletePersonById
+        return mongoTemplate.findAndRemove(Query.query(Criteria.where("personId").is(personId)), Person.class)
+                .switchIfEmpty(notFound())
+                .doOnNext(personCache::evict)
+                .flatMap(deleted -> updateCityStats(() -> cityStatsService.personDeleted(deleted)).thenReturn(deleted));
+    }
+
+    // PATCH : one findAndModify of the fields in the patch, see PersonServiceImpl.patchPerson
+    // A rename, or a change city_stats has to follow, reads the stored version first and patches only that version
+    @Override
+    public Mono<Person> patchPerson(String personId, PersonPatch patch) {
+        FindAndModifyOptions returnNew = FindAndModifyOptions.options().returnNew(true);
+        boolean needsPrevious = patch.getFirstName() != null
+                || (cityStatsService.isEnabled() && PersonPatches.changesCityStats(patch));
+        return Mono.fromCallable(() -> PersonPatches.toUpdate(patch))
+                .flatMap(update -> !needsPrevious
+                        ? mongoTemplate.findAndModify(PersonPatches.query(personId, patch.getExpectedVersion()),
+                                        update, returnNew, Person.class)
+                                .switchIfEmpty(Mono.defer(() -> patchMissed(personId, patch.getExpectedVersion())))
+                                .doOnNext(personCache::evict)
+                        : personRepository.findById(personId)
+                                .switchIfEmpty(notFound())
+                                .flatMap(previous -> {
+                                    long version = PersonPatches.versionOf(previous);
+                                    if (patch.getExpectedVersion() != null && patch.getExpectedVersion() != version) {
+                                        return patchMissed(personId, patch.getExpectedVersion());
+                                    }
+                                    // Empty when the person changed since it was read : repeated below
+                                    return mongoTemplate.findAndModify(PersonPatches.query(personId, version), update, returnNew, Person.class)
+                                            .doOnNext(patched -> personCache.evict(previous, patched))
+                                            .flatMap(patched -> updateCityStats(() -> cityStatsService.personSaved(previous, patched))
+                                                    .thenReturn(patched));
+                                })
+                                .repeatWhenEmpty(MAX_PATCH_ATTEMPTS - 1, repeats -> repeats));
+    }
+
+    private static Mono<Void> updateCityStats(Runnable update) {
+        return Mono.fromRunnable(update).subscribeOn(Schedulers.boundedElastic()).then();
+    }
+
+    // Nothing was patched : the person is gone, or it is not in the expected version anymore
+    private Mono<Person> patchMissed(String personId, Long expectedVersion) {
+        if (expectedVersion == null) {
+            return notFound();
+        }
+        return mongoTemplate.exists(Query.query(Criteria.where("personId").is(personId)), Person.class)
+                .flatMap(exists -> exists
+                        ? Mono.error(new OptimisticLockingFailureException(
+                                "Person " + personId + " is not in version " + expectedVersion + " anymore"))
+                        : notFound());
+    }
+
+    @Override
+    public Flux<Person> getPersonByAge(Integer minAge, Integer maxAge, boolean includeAllFields) {
+        Flux<Person> personListByAge = includeAllFields
+                ? personRepository.findPersonByAge(minAge, maxAge)
+                : personRepository.findPersonByAgeFieldIncludingOnly(minAge, maxAge);
+        return personListByAge.switchIfEmpty(notFound());
+    }
+
+    // The page content and the count are two independent queries, they run at the same time
+    @Override
+    public Mono<Page<Person>> searchPerson(Optional<String> firstName, Optional<Integer> minAge, Optional<Integer> maxAge, Optional<String> city, Pageable pageable) {
+        List<Criteria> criteria = PersonSearchCriteria.of(firstName, minAge, maxAge, city);
+        Query countQuery = readRouting.analytics(criteria.isEmpty() ? new Query() : new Query(PersonSearchCriteria.and(criteria)));
+        Query query = readRouting.analytics(Query.of(countQuery).with(pageable));
+
+        return Mono.zip(mongoTemplate.find(query, Person.class).collectList(),
+                        mongoTemplate.count(countQuery, Person.class))
+                .map(pageAndCount -> new PageImpl<>(pageAndCount.getT1(), pageable, pageAndCount.getT2()));
+    }
+
+    // The server version check is a blocking call (done once), it is kept off the event loop
+    @Override
+    public Flux<OldestPersonInCity> getOlderPersonInEachCity(int top) {
+        if (top < 1) {
+            return Flux.error(new IllegalArgumentException("top should be at least 1"));
+        }
+        return Mono.fromCallable(serverFeatures::supportsTopN).subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(topN -> mongoTemplate.aggregate(PersonAggregations.olderPersonInEachCity(top, topN, reportOptions),
+                        Person.class, OldestPersonInCity.class));
+    }
+
+    @Override
+    public Flux<CityPopulation> getPopulationByCity(Integer limit) {
+        if (limit != null && limit < 1) {
+            return Flux.error(new IllegalArgumentException("limit should be at least 1"));
+        }
+        return mongoTemplate.aggregate(PersonAggregations.populationByCity(limit, reportOptions), Person.class, CityPopulation.class);
+    }
+
+    private static <T> Mono<T> notFound() {
+        return Mono.error(new RuntimeException("Person Not Found"));
+    }
+}
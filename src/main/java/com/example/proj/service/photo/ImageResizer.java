@@ -0,0 +1,138 @@
+package com.example.proj.service.photo;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+
+/**
+ * NOTE : Resizing with the JDK only (ImageIO + Java2D)
+ * The image is scaled to fit in maxWidth x maxHeight (0 = no limit on that side), keeping its aspect ratio
+ * and never made bigger than the original. Big reductions are done by halving steps, a single bilinear
+ * pass from 4000px to 200px skips most of the pixels and looks jagged.
+ * The size of the original is read from its header before anything is decoded : a small file can declare
+ * 30000x30000 pixels (3.6GB once decoded), anything above maxSourcePixels is refused. A source much bigger
+ * than the target is decoded subsampled (every n-th pixel, still at least twice the target size).
+ */
+public final class ImageResizer {
+
+    static {
+        // Otherwise ImageIO buffers every encoded image in a temp file before it reaches the byte array
+        ImageIO.setUseCache(false);
+    }
+
+    private ImageResizer() {
+    }
+
+    public static BufferedImage read(InputStream content, long maxSourcePixels, int maxWidth, int maxHeight) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(content)) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                throw new IllegalArgumentException("The photo is not an image format that can be resized");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxSourcePixels) {
+                    throw new IllegalArgumentException("The photo is too large to be resized (" + width + "x" + height
+                            + ", at most " + maxSourcePixels + " pixels)");
+                }
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = subsampling(width, height, maxWidth, maxHeight);
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Keeps at least twice the target size, the halving steps of resize() do the rest
+    private static int subsampling(int width, int height, int maxWidth, int maxHeight) {
+        int subsampling = Integer.MAX_VALUE;
+        if (maxWidth > 0) {
+            subsampling = Math.min(subsampling, width / (2 * maxWidth));
+        }
+        if (maxHeight > 0) {
+            subsampling = Math.min(subsampling, height / (2 * maxHeight));
+        }
+        return subsampling == Integer.MAX_VALUE ? 1 : Math.max(1, subsampling);
+    }
+
+    public static BufferedImage resize(BufferedImage source, int maxWidth, int maxHeight, boolean opaque) {
+        double scale = 1;
+        if (maxWidth > 0) {
+            scale = Math.min(scale, (double) maxWidth / source.getWidth());
+        }
+        if (maxHeight > 0) {
+            scale = Math.min(scale, (double) maxHeight / source.getHeight());
+        }
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+            current = draw(current, currentWidth, currentHeight, opaque);
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    // JPEG has no alpha channel : transparent images are drawn on white instead of being written black
+    private static BufferedImage draw(BufferedImage source, int width, int height, boolean opaque) {
+        BufferedImage target = new BufferedImage(width, height, opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            if (opaque) {
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, width, height);
+            }
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    public static byte[] write(BufferedImage image, String format, float jpegQuality) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        if (!writers.hasNext()) {
+            throw new IllegalArgumentException("No image writer for format " + format);
+        }
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if ("jpeg".equals(format)) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(jpegQuality);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+}
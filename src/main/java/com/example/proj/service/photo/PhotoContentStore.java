@@ -0,0 +1,126 @@
+package com.example.proj.service.photo;
+
+import com.example.proj.model.Photo;
+import com.example.proj.model.PhotoContent;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.Date;
+
+/**
+ * NOTE : Content addressed photo storage (deduplication)
+ * Every distinct image is stored once in GridFS, photo_content maps its SHA-256 to the GridFS file and
+ * counts the photos using it.
+ *  - store   : the upload is hashed first (the multipart is already spooled to a temp file, so this is a local read),
+ *              known content just gets refCount + 1 and nothing is written to GridFS. New content is then streamed
+ *              into GridFS. Duplicates never reach the database, neither the disk nor its cache.
+ *  - release : refCount - 1 when a photo is deleted, at 0 the content is marked orphaned.
+ *  - gc      : orphaned content older than the grace period is removed. An upload of the same image meanwhile
+ *              brings it back ($inc + unset orphanedAt), the removal only matches documents still at 0.
+ */
+@Component
+public class PhotoContentStore {
+
+    private static final Logger log = LoggerFactory.getLogger(PhotoContentStore.class);
+
+    private final MongoTemplate mongoTemplate;
+    private final GridFsTemplate gridFsTemplate;
+    private final Duration gcGrace;
+
+    public PhotoContentStore(MongoTemplate mongoTemplate, GridFsTemplate gridFsTemplate,
+                             @Value("${app.photo.content.gc-grace:1h}") Duration gcGrace) {
+        this.mongoTemplate = mongoTemplate;
+        this.gridFsTemplate = gridFsTemplate;
+        this.gcGrace = gcGrace;
+    }
+
+    public PhotoContent store(InputStreamSource source, String filename, String contentType) throws IOException {
+        MessageDigest digest = ContentChecksum.newDigest();
+        long size;
+        try (InputStream inputStream = new DigestInputStream(source.getInputStream(), digest)) {
+            size = inputStream.transferTo(OutputStream.nullOutputStream());
+        }
+        String checksum = ContentChecksum.toHex(digest.digest());
+
+        PhotoContent existing = acquire(checksum);
+        if (existing != null) {
+            return existing;
+        }
+        ObjectId contentId;
+        try (InputStream inputStream = source.getInputStream()) {
+            contentId = gridFsTemplate.store(inputStream, filename, contentType);
+        }
+        try {
+            return mongoTemplate.insert(new PhotoContent(checksum, contentId.toHexString(), size, contentType, 1, new Date(), null));
+        } catch (DuplicateKeyException e) {
+            // The same image was uploaded at the same time : keep the other copy
+            gridFsTemplate.delete(Query.query(Criteria.where("_id").is(contentId)));
+            PhotoContent winner = acquire(checksum);
+            if (winner == null) {
+                throw new IllegalStateException("Photo content " + checksum + " was removed while being stored", e);
+            }
+            return winner;
+        }
+    }
+
+    public void release(Photo photo) {
+        if (photo.getContentId() == null) {
+            return;
+        }
+        Query content = Query.query(Criteria.where("_id").is(photo.getChecksum()).and("contentId").is(photo.getContentId()));
+        if (photo.getChecksum() == null
+                || mongoTemplate.updateFirst(content, new Update().inc("refCount", -1), PhotoContent.class).getMatchedCount() == 0) {
+            // Stored before deduplication existed : the GridFS file belongs to this photo only
+            deleteFile(photo.getContentId());
+            return;
+        }
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(photo.getChecksum()).and("refCount").lte(0)),
+                new Update().set("orphanedAt", new Date()), PhotoContent.class);
+    }
+
+    @Scheduled(fixedDelayString = "${app.photo.content.gc-interval:PT10M}",
+               initialDelayString = "${app.photo.content.gc-interval:PT10M}")
+    public long collectGarbage() {
+        Date cutoff = new Date(System.currentTimeMillis() - gcGrace.toMillis());
+        Query orphaned = Query.query(Criteria.where("refCount").lte(0).and("orphanedAt").lt(cutoff));
+        long removed = 0;
+        PhotoContent content;
+        // The document goes first : once it is gone no upload can point to the file anymore
+        while ((content = mongoTemplate.findAndRemove(orphaned, PhotoContent.class)) != null) {
+            deleteFile(content.getContentId());
+            removed++;
+        }
+        if (removed > 0) {
+            log.info("Removed {} orphaned photo contents", removed);
+        }
+        return removed;
+    }
+
+    private PhotoContent acquire(String checksum) {
+        return mongoTemplate.findAndModify(Query.query(Criteria.where("_id").is(checksum)),
+                new Update().inc("refCount", 1).unset("orphanedAt"),
+                FindAndModifyOptions.options().returnNew(true), PhotoContent.class);
+    }
+
+    private void deleteFile(String contentId) {
+        gridFsTemplate.delete(Query.query(Criteria.where("_id").is(new ObjectId(contentId))));
+    }
+}
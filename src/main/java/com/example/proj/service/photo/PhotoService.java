@@ -1,12 +1,24 @@
 package com.example.proj.service.photo;
 
 import com.example.proj.model.Photo;
+import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.util.List;
 
 public interface PhotoService{
     Photo createPhoto(String originalFilename, MultipartFile image) throws IOException;
 
     Photo getPhotoById(String id);
+
+    Photo deletePhoto(String id);
+
+    Photo getPhotoMetadataById(String id);
+
+    List<Photo> getPhotoMetadata(int page, int size);
+
+    Resource getPhotoContent(Photo photo);
+
+    long migrateLegacyPhotos() throws IOException;
 }
@@ -1,30 +1,94 @@
 package com.example.proj.service.photo;
 
+import com.example.proj.cache.SingleFlight;
 import com.example.proj.model.Photo;
+import com.example.proj.model.PhotoContent;
 import com.example.proj.repository.PhotoRepository;
-import org.bson.BsonBinarySubType;
-import org.bson.types.Binary;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Service
 public class PhotoServiceImpl implements PhotoService{
 
     private final PhotoRepository photoRepository;
+    private final GridFsTemplate gridFsTemplate;
+    private final MongoTemplate mongoTemplate;
+    private final PhotoContentStore contentStore;
+    private final SingleFlight metadataFlight;
 
-    public PhotoServiceImpl(PhotoRepository photoRepository) {
+    public PhotoServiceImpl(PhotoRepository photoRepository, GridFsTemplate gridFsTemplate, MongoTemplate mongoTemplate,
+                            PhotoContentStore contentStore, MeterRegistry meterRegistry,
+                            @Value("${app.single-flight.photo.timeout:5s}") Duration singleFlightTimeout) {
         this.photoRepository = photoRepository;
+        this.gridFsTemplate = gridFsTemplate;
+        this.mongoTemplate = mongoTemplate;
+        this.contentStore = contentStore;
+        this.metadataFlight = new SingleFlight("photo.metadata", singleFlightTimeout.toMillis(), meterRegistry);
     }
 
+    /**
+     * NOTE : GridFS
+     * The image is streamed from the multipart input straight into fs.chunks (255KB each),
+     * so only one chunk is in memory at a time, and the 16MB document limit no longer applies.
+     * The photo document only keeps the reference (contentId) to the GridFS file.
+     * An image that was already uploaded is not stored again, the photo points to the existing file (see PhotoContentStore).
+     */
     @Override
     public Photo createPhoto(String originalFilename, MultipartFile image) throws IOException {
+        PhotoContent content = contentStore.store(image, originalFilename, image.getContentType());
         Photo photo = new Photo();
         photo.setTitle(originalFilename);
-        photo.setPhoto(new Binary(BsonBinarySubType.BINARY,image.getBytes()));
-        return photoRepository.save(photo);
+        photo.setContentId(content.getContentId());
+        photo.setContentType(image.getContentType());
+        photo.setSize(content.getSize());
+        photo.setChecksum(content.getChecksum());
+        photo.setUploadedAt(new Date());
+        try {
+            return photoRepository.save(photo);
+        } catch (RuntimeException e) {
+            // store() took a reference on the content : without the photo nothing would ever release it
+            try {
+                contentStore.release(photo);
+            } catch (RuntimeException releaseFailure) {
+                e.addSuppressed(releaseFailure);
+            }
+            throw e;
+        }
+    }
+
+    // findAndRemove : the photo is read and deleted in one step, two concurrent deletes can't both release the content.
+    // The legacy Binary is excluded, it is never needed here.
+    @Override
+    public Photo deletePhoto(String id) {
+        Query byId = Query.query(Criteria.where("id").is(id));
+        byId.fields().exclude("photo");
+        Photo photo = mongoTemplate.findAndRemove(byId, Photo.class);
+        if (photo == null) {
+            throw new RuntimeException("No Photo By the Id Found");
+        }
+        contentStore.release(photo);
+        return photo;
     }
 
     @Override
@@ -36,4 +100,70 @@ public class PhotoServiceImpl implements PhotoService{
             throw new RuntimeException("No Photo By the Id Found");
         }
     }
+
+    // A popular photo is requested by many clients at once (/photo/{id}) : they share one metadata read
+    @Override
+    public Photo getPhotoMetadataById(String id) {
+        Optional<Photo> photoById = metadataFlight.execute(id, () -> photoRepository.findMetadataById(id));
+        if(photoById.isPresent()){
+            return photoById.get();
+        }else{
+            throw new RuntimeException("No Photo By the Id Found");
+        }
+    }
+
+    @Override
+    public List<Photo> getPhotoMetadata(int page, int size) {
+        return photoRepository.findAllMetadata(PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "id")));
+    }
+
+    // GridFsResource reads the chunks lazily while the response is written, and knows its length up front,
+    // which lets Spring MVC answer Range requests (206 Partial Content) by skipping chunks.
+    @Override
+    public Resource getPhotoContent(Photo photo) {
+        if (photo.getContentId() != null) {
+            GridFSFile file = gridFsTemplate.findOne(
+                    Query.query(Criteria.where("_id").is(new ObjectId(photo.getContentId()))));
+            if (file == null) {
+                throw new RuntimeException("No Photo Content By the Id Found");
+            }
+            return gridFsTemplate.getResource(file);
+        }
+        // Legacy photo : the Binary is only loaded here, when the content is really needed
+        Photo legacyPhoto = photo.getPhoto() != null ? photo : getPhotoById(photo.getId());
+        if (legacyPhoto.getPhoto() != null) {
+            return new ByteArrayResource(legacyPhoto.getPhoto().getData());
+        }
+        throw new RuntimeException("No Photo Content By the Id Found");
+    }
+
+    /**
+     * MIGRATION : moves the old Binary photos into GridFS.
+     * mongoTemplate.stream(..) iterates a cursor, so only one legacy document is held in memory at a time.
+     * A photo is switched over (contentId set, photo unset) only after its GridFS file is stored,
+     * so running it again after a failure just continues with the remaining ones.
+     * Legacy photos go through the same deduplication as uploads.
+     */
+    @Override
+    public long migrateLegacyPhotos() throws IOException {
+        Query legacyPhotos = Query.query(Criteria.where("photo").exists(true).and("contentId").exists(false));
+        long migrated = 0;
+        try (Stream<Photo> photos = mongoTemplate.stream(legacyPhotos, Photo.class)) {
+            Iterator<Photo> iterator = photos.iterator();
+            while (iterator.hasNext()) {
+                Photo photo = iterator.next();
+                PhotoContent content = contentStore.store(
+                        new ByteArrayResource(photo.getPhoto().getData()), photo.getTitle(), photo.getContentType());
+                mongoTemplate.updateFirst(
+                        Query.query(Criteria.where("id").is(photo.getId())),
+                        new Update().set("contentId", content.getContentId())
+                                .set("size", content.getSize())
+                                .set("checksum", content.getChecksum())
+                                .unset("photo"),
+                        Photo.class);
+                migrated++;
+            }
+        }
+        return migrated;
+    }
 }
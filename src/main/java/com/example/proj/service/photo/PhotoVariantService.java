@@ -0,0 +1,16 @@
+package com.example.proj.service.photo;
+
+import com.example.proj.model.Photo;
+import com.example.proj.model.PhotoVariant;
+
+import java.util.Map;
+
+public interface PhotoVariantService {
+    PhotoVariant getVariant(Photo photo, Integer width, Integer height, String format);
+
+    String variantKey(Photo photo, Integer width, Integer height, String format);
+
+    void deleteVariants(String photoId);
+
+    Map<String, Object> getCacheStats();
+}
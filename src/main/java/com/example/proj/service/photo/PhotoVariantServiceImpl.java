@@ -0,0 +1,229 @@
+package com.example.proj.service.photo;
+
+import com.example.proj.model.Photo;
+import com.example.proj.model.PhotoVariant;
+import com.example.proj.repository.PhotoVariantRepository;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.mongodb.client.gridfs.model.GridFSFile;
+import jakarta.annotation.PreDestroy;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.GridFsTemplate;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.*;
+
+/**
+ * NOTE : Resized photo variants (/photo/{id}?w=&h=&format=)
+ * Lookup order for a variant :
+ *  1. in-memory cache (Caffeine, bounded by the total bytes of the encoded images, least recently used go first)
+ *  2. photo_variant + GridFS : a variant is generated once and stored next to the original
+ *  3. generation : decode the original, resize, encode, store
+ * Steps 2 and 3 run on a small fixed pool with a bounded queue, so a burst of previews can't decode
+ * hundreds of full size images at once (a decoded 4000x3000 photo is ~48MB of heap). When the queue is full
+ * the request is rejected (503) instead of waiting.
+ * The cache holds futures : concurrent requests for the same variant share one generation.
+ * Sizes are rounded down to `size-step` pixels so clients can't create an unbounded number of variants.
+ * Originals above `max-source-pixels` are not decoded at all (400), see ImageResizer.
+ */
+@Service
+public class PhotoVariantServiceImpl implements PhotoVariantService {
+
+    private static final Map<String, String> FORMATS = Map.of("jpeg", "image/jpeg", "jpg", "image/jpeg", "png", "image/png");
+
+    private final PhotoService photoService;
+    private final PhotoVariantRepository variantRepository;
+    private final GridFsTemplate gridFsTemplate;
+    private final AsyncCache<String, PhotoVariant> variants;
+    private final ThreadPoolExecutor workers;
+    private final int maxDimension;
+    private final long maxSourcePixels;
+    private final int sizeStep;
+    private final float jpegQuality;
+    private final long timeoutMillis;
+
+    public PhotoVariantServiceImpl(PhotoService photoService, PhotoVariantRepository variantRepository, GridFsTemplate gridFsTemplate,
+                                   @Value("${app.photo.variant.cache-max-size:64MB}") DataSize cacheMaxSize,
+                                   @Value("${app.photo.variant.threads:2}") int threads,
+                                   @Value("${app.photo.variant.queue-capacity:32}") int queueCapacity,
+                                   @Value("${app.photo.variant.max-dimension:2048}") int maxDimension,
+                                   @Value("${app.photo.variant.max-source-pixels:50000000}") long maxSourcePixels,
+                                   @Value("${app.photo.variant.size-step:10}") int sizeStep,
+                                   @Value("${app.photo.variant.jpeg-quality:0.8}") float jpegQuality,
+                                   @Value("${app.photo.variant.timeout:10s}") Duration timeout) {
+        this.photoService = photoService;
+        this.variantRepository = variantRepository;
+        this.gridFsTemplate = gridFsTemplate;
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("photo-variant-"));
+        this.variants = Caffeine.newBuilder()
+                .maximumWeight(cacheMaxSize.toBytes())
+                .weigher((String key, PhotoVariant variant) -> variant.getContent().length)
+                .recordStats()
+                .buildAsync();
+        this.maxDimension = maxDimension;
+        this.maxSourcePixels = maxSourcePixels;
+        this.sizeStep = sizeStep;
+        this.jpegQuality = jpegQuality;
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+
+    @Override
+    public PhotoVariant getVariant(Photo photo, Integer width, Integer height, String format) {
+        int maxWidth = normalize(width);
+        int maxHeight = normalize(height);
+        String outputFormat = outputFormat(format, photo.getContentType());
+        String key = key(photo, maxWidth, maxHeight, outputFormat);
+
+        // A full queue throws RejectedExecutionException here, nothing is cached for the key then
+        CompletableFuture<PhotoVariant> variant = variants.get(key, (k, executor) ->
+                CompletableFuture.supplyAsync(() -> loadOrGenerate(photo, maxWidth, maxHeight, outputFormat), workers));
+        try {
+            return variant.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // The generation goes on, the next request for this variant will find it
+            throw new RejectedExecutionException("The photo variant is still being generated");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // The variant actually served for these parameters : two requests with the same key get the same bytes
+    @Override
+    public String variantKey(Photo photo, Integer width, Integer height, String format) {
+        return key(photo, normalize(width), normalize(height), outputFormat(format, photo.getContentType()));
+    }
+
+    // Variants belong to one photo (not to its content), they go with it
+    @Override
+    public void deleteVariants(String photoId) {
+        List<PhotoVariant> stored = variantRepository.findByPhotoId(photoId);
+        for (PhotoVariant variant : stored) {
+            gridFsTemplate.delete(Query.query(Criteria.where("_id").is(new ObjectId(variant.getContentId()))));
+        }
+        variantRepository.deleteAll(stored);
+        variants.synchronous().asMap().keySet().removeIf(key -> key.startsWith(photoId + ":"));
+    }
+
+    @Override
+    public Map<String, Object> getCacheStats() {
+        CacheStats stats = variants.synchronous().stats();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("hits", stats.hitCount());
+        map.put("misses", stats.missCount());
+        map.put("hitRate", stats.hitRate());
+        map.put("evictions", stats.evictionCount());
+        map.put("size", variants.synchronous().estimatedSize());
+        map.put("generationQueue", workers.getQueue().size());
+        return map;
+    }
+
+    private PhotoVariant loadOrGenerate(Photo photo, int maxWidth, int maxHeight, String format) {
+        try {
+            Optional<PhotoVariant> stored = variantRepository.findByPhotoIdAndMaxWidthAndMaxHeightAndFormat(
+                    photo.getId(), maxWidth, maxHeight, format);
+            if (stored.isPresent()) {
+                byte[] content = readContent(stored.get().getContentId());
+                if (content != null) {
+                    stored.get().setContent(content);
+                    return stored.get();
+                }
+                // The GridFS file is gone : generate it again
+                variantRepository.delete(stored.get());
+            }
+            return generate(photo, maxWidth, maxHeight, format);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private PhotoVariant generate(Photo photo, int maxWidth, int maxHeight, String format) throws IOException {
+        BufferedImage original;
+        try (InputStream content = photoService.getPhotoContent(photo).getInputStream()) {
+            original = ImageResizer.read(content, maxSourcePixels, maxWidth, maxHeight);
+        }
+        BufferedImage resized = ImageResizer.resize(original, maxWidth, maxHeight, !"png".equals(format));
+        byte[] bytes = ImageResizer.write(resized, format, jpegQuality);
+
+        String contentType = FORMATS.get(format);
+        ObjectId contentId = gridFsTemplate.store(new ByteArrayInputStream(bytes),
+                photo.getId() + "-" + maxWidth + "x" + maxHeight + "." + format, contentType);
+        PhotoVariant variant = new PhotoVariant(null, photo.getId(), maxWidth, maxHeight, format,
+                resized.getWidth(), resized.getHeight(), contentId.toHexString(), contentType, (long) bytes.length, new Date(), null);
+        try {
+            variant = variantRepository.save(variant);
+        } catch (DuplicateKeyException e) {
+            // Another instance stored the same variant meanwhile : keep theirs, drop our copy
+            gridFsTemplate.delete(Query.query(Criteria.where("_id").is(contentId)));
+            variant = variantRepository.findByPhotoIdAndMaxWidthAndMaxHeightAndFormat(photo.getId(), maxWidth, maxHeight, format)
+                    .orElseThrow(() -> e);
+        }
+        variant.setContent(bytes);
+        return variant;
+    }
+
+    private byte[] readContent(String contentId) throws IOException {
+        GridFSFile file = gridFsTemplate.findOne(Query.query(Criteria.where("_id").is(new ObjectId(contentId))));
+        if (file == null) {
+            return null;
+        }
+        try (InputStream content = gridFsTemplate.getResource(file).getInputStream()) {
+            return content.readAllBytes();
+        }
+    }
+
+    private static String key(Photo photo, int maxWidth, int maxHeight, String format) {
+        return photo.getId() + ":" + maxWidth + "x" + maxHeight + ":" + format;
+    }
+
+    // null or 0 : that side is not constrained. Otherwise rounded down to the step, between one step and maxDimension
+    private int normalize(Integer size) {
+        if (size == null || size <= 0) {
+            return 0;
+        }
+        int bounded = Math.min(size, maxDimension);
+        return Math.max(sizeStep, bounded - bounded % sizeStep);
+    }
+
+    // Without a format, PNG and GIF originals stay PNG (they may be transparent), everything else becomes JPEG
+    private static String outputFormat(String format, String originalContentType) {
+        if (format == null || format.isBlank()) {
+            return "image/png".equals(originalContentType) || "image/gif".equals(originalContentType) ? "png" : "jpeg";
+        }
+        String normalized = format.toLowerCase(Locale.ROOT);
+        if (!FORMATS.containsKey(normalized)) {
+            throw new IllegalArgumentException("format should be one of jpeg, png");
+        }
+        return "jpg".equals(normalized) ? "jpeg" : normalized;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.proj.service.photo;
+
+import com.example.proj.model.Photo;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.codec.multipart.FilePart;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactivePhotoService {
+    Mono<Photo> createPhoto(FilePart image);
+
+    Mono<Photo> getPhotoMetadataById(String id);
+
+    Flux<Photo> getPhotoMetadata(int page, int size);
+
+    Flux<DataBuffer> getPhotoContent(Photo photo);
+}
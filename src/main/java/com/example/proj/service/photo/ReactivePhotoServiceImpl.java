@@ -0,0 +1,96 @@
+package com.example.proj.service.photo;
+
+import com.example.proj.model.Photo;
+import com.example.proj.repository.ReactivePhotoRepository;
+import org.bson.types.ObjectId;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.gridfs.ReactiveGridFsResource;
+import org.springframework.data.mongodb.gridfs.ReactiveGridFsTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.multipart.FilePart;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.security.MessageDigest;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * NOTE : Reactive version of PhotoServiceImpl
+ * The upload is a Flux<DataBuffer> going straight into GridFS, the checksum and size are computed
+ * on each buffer as it passes. The download is the GridFS download stream, chunk by chunk.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactivePhotoServiceImpl implements ReactivePhotoService {
+
+    private final ReactivePhotoRepository photoRepository;
+    private final ReactiveGridFsTemplate gridFsTemplate;
+
+    public ReactivePhotoServiceImpl(ReactivePhotoRepository photoRepository, ReactiveGridFsTemplate gridFsTemplate) {
+        this.photoRepository = photoRepository;
+        this.gridFsTemplate = gridFsTemplate;
+    }
+
+    @Override
+    public Mono<Photo> createPhoto(FilePart image) {
+        MessageDigest digest = ContentChecksum.newDigest();
+        AtomicLong size = new AtomicLong();
+        Flux<DataBuffer> content = image.content().doOnNext(buffer -> {
+            // readableByteBuffers() are views : reading them doesn't move the read position of the buffer itself
+            try (DataBuffer.ByteBufferIterator bytes = buffer.readableByteBuffers()) {
+                bytes.forEachRemaining(byteBuffer -> {
+                    size.addAndGet(byteBuffer.remaining());
+                    digest.update(byteBuffer);
+                });
+            }
+        });
+        MediaType contentType = image.headers().getContentType();
+
+        return gridFsTemplate.store(content, image.filename(), contentType == null ? null : contentType.toString())
+                .flatMap(contentId -> {
+                    Photo photo = new Photo();
+                    photo.setTitle(image.filename());
+                    photo.setContentId(contentId.toHexString());
+                    photo.setContentType(contentType == null ? null : contentType.toString());
+                    photo.setSize(size.get());
+                    photo.setChecksum(ContentChecksum.toHex(digest.digest()));
+                    photo.setUploadedAt(new Date());
+                    return photoRepository.save(photo);
+                });
+    }
+
+    @Override
+    public Mono<Photo> getPhotoMetadataById(String id) {
+        return photoRepository.findMetadataById(id)
+                .switchIfEmpty(Mono.error(new RuntimeException("No Photo By the Id Found")));
+    }
+
+    @Override
+    public Flux<Photo> getPhotoMetadata(int page, int size) {
+        return photoRepository.findAllMetadata(PageRequest.of(page, size, Sort.by(Sort.Direction.DESC, "id")));
+    }
+
+    @Override
+    public Flux<DataBuffer> getPhotoContent(Photo photo) {
+        if (photo.getContentId() != null) {
+            return gridFsTemplate.findOne(Query.query(Criteria.where("_id").is(new ObjectId(photo.getContentId()))))
+                    .switchIfEmpty(Mono.error(new RuntimeException("No Photo Content By the Id Found")))
+                    .flatMap(gridFsTemplate::getResource)
+                    .flatMapMany(ReactiveGridFsResource::getDownloadStream);
+        }
+        // Legacy photo : the Binary is only loaded here, when the content is really needed
+        return photoRepository.findById(photo.getId())
+                .filter(legacyPhoto -> legacyPhoto.getPhoto() != null)
+                .switchIfEmpty(Mono.error(new RuntimeException("No Photo Content By the Id Found")))
+                .map(legacyPhoto -> (DataBuffer) DefaultDataBufferFactory.sharedInstance.wrap(legacyPhoto.getPhoto().getData()))
+                .flux();
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.proj.service.stats;
+
+import com.example.proj.dto.CityPopulation;
+import com.example.proj.dto.OldestPersonInCity;
+import com.example.proj.model.Person;
+
+import java.util.List;
+
+public interface CityStatsService {
+    boolean isEnabled();
+
+    void personSaved(Person previous, Person saved);
+
+    void personDeleted(Person person);
+
+    long rebuild();
+
+    List<CityPopulation> getPopulationByCity(Integer limit);
+
+    List<OldestPersonInCity> getOldestPersonInEachCity();
+}
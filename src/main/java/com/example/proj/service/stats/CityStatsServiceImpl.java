@@ -0,0 +1,208 @@
+package com.example.proj.service.stats;
+
+import com.example.proj.config.mongo.MongoReadRouting;
+import com.example.proj.dto.CityPopulation;
+import com.example.proj.dto.OldestPersonInCity;
+import com.example.proj.model.Address;
+import com.example.proj.model.Person;
+import com.example.proj.service.person.PersonAggregations;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * NOTE : Materialized city statistics
+ * `city_stats` holds one document per city : { _id: city, population, oldestPerson, refreshedAt }.
+ * The dashboards read it directly (O(cities)) instead of unwinding and grouping the whole person collection.
+ *  - createPerson / deletePersonById update it incrementally : $inc on the population, and the oldest person
+ *    is replaced only when the new one is older. When the oldest person of a city leaves it, only that city
+ *    is looked up again (city_age index, one document read).
+ *  - A full rebuild ($merge of the original pipeline into city_stats) runs at startup when the view is empty,
+ *    every `app.city-stats.rebuild-interval`, and after a bulk ingest. It corrects whatever the incremental
+ *    updates missed (concurrent writes, writes from outside this service).
+ * The oldest person is stored trimmed (id, names, age), like the report returns it.
+ */
+@Service
+public class CityStatsServiceImpl implements CityStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(CityStatsServiceImpl.class);
+    public static final String COLLECTION = "city_stats";
+
+    private final MongoTemplate mongoTemplate;
+    private final MongoReadRouting readRouting;
+    private final boolean enabled;
+
+    public CityStatsServiceImpl(MongoTemplate mongoTemplate, MongoReadRouting readRouting,
+                                @Value("${app.city-stats.enabled:true}") boolean enabled) {
+        this.mongoTemplate = mongoTemplate;
+        this.readRouting = readRouting;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // `previous` is the stored version when a person is replaced, null for a new person
+    @Override
+    public void personSaved(Person previous, Person saved) {
+        if (!enabled) {
+            return;
+        }
+        if (previous != null) {
+            personDeleted(previous);
+        }
+        Document person = toDocument(saved);
+        countByCity(saved).forEach((city, count) -> {
+            Query byCity = Query.query(Criteria.where("_id").is(city));
+            mongoTemplate.upsert(byCity, new Update().inc("population", count).set("refreshedAt", new Date()), COLLECTION);
+
+            // Only replaces the oldest person when this one is older (a person without an age only fills an empty slot)
+            Criteria olderThanCurrent = saved.getAge() == null
+                    ? Criteria.where("oldestPerson").is(null)
+                    : new Criteria().orOperator(Criteria.where("oldestPerson").is(null),
+                                                Criteria.where("oldestPerson.age").lt(saved.getAge()));
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(city).andOperator(olderThanCurrent)),
+                    new Update().set("oldestPerson", oldestPerson(person, city)), COLLECTION);
+        });
+    }
+
+    @Override
+    public void personDeleted(Person person) {
+        if (!enabled) {
+            return;
+        }
+        Object id = toDocument(person).get("_id");
+        countByCity(person).forEach((city, count) -> {
+            Query byCity = Query.query(Criteria.where("_id").is(city));
+            mongoTemplate.updateFirst(byCity, new Update().inc("population", -count).set("refreshedAt", new Date()), COLLECTION);
+            mongoTemplate.remove(Query.query(Criteria.where("_id").is(city).and("population").lte(0)), COLLECTION);
+
+            boolean wasOldest = mongoTemplate.exists(
+                    Query.query(Criteria.where("_id").is(city).and("oldestPerson._id").is(id)), COLLECTION);
+            if (wasOldest) {
+                refreshOldestPerson(city);
+            }
+        });
+    }
+
+    // The person collection already holds the latest version here, so this picks the right one after an update too
+    private void refreshOldestPerson(String city) {
+        Aggregation oldest = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("addresses.city").is(city)),
+                Aggregation.project("firstName", "lastName", "age").and("addresses.city").as("city"),
+                Aggregation.unwind("city"),
+                Aggregation.match(Criteria.where("city").is(city)),
+                Aggregation.sort(Sort.Direction.DESC, "age"),
+                Aggregation.limit(1));
+        Document person = mongoTemplate.aggregate(oldest, Person.class, Document.class).getUniqueMappedResult();
+        Query byCity = Query.query(Criteria.where("_id").is(city));
+        mongoTemplate.updateFirst(byCity,
+                person == null ? new Update().unset("oldestPerson") : new Update().set("oldestPerson", person),
+                COLLECTION);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.city-stats.rebuild-interval:PT1H}",
+               initialDelayString = "${app.city-stats.rebuild-interval:PT1H}")
+    public long rebuild() {
+        if (!enabled) {
+            return 0;
+        }
+        long start = System.currentTimeMillis();
+        Date refreshedAt = new Date(start);
+        mongoTemplate.aggregate(PersonAggregations.cityStatsRebuild(COLLECTION, refreshedAt), Person.class, Document.class);
+        // Cities nobody lives in anymore weren't touched by the $merge
+        long removed = mongoTemplate.remove(Query.query(Criteria.where("refreshedAt").lt(refreshedAt)), COLLECTION)
+                .getDeletedCount();
+        long cities = mongoTemplate.estimatedCount(COLLECTION);
+        log.info("city_stats rebuilt : {} cities ({} removed) in {} ms", cities, removed, System.currentTimeMillis() - start);
+        return cities;
+    }
+
+    // A failure here doesn't stop the startup, the reports are just empty until the next scheduled rebuild
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfEmpty() {
+        try {
+            if (enabled && mongoTemplate.estimatedCount(COLLECTION) == 0) {
+                rebuild();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not build city_stats at startup", e);
+        }
+    }
+
+    @Override
+    public List<CityPopulation> getPopulationByCity(Integer limit) {
+        // The reports are read like the pipelines they replace (see MongoReadRouting), maintenance stays on the primary
+        Query query = readRouting.analytics(new Query().with(Sort.by(Sort.Direction.DESC, "population")));
+        if (limit != null) {
+            query.limit(limit);
+        }
+        query.fields().include("population");
+        List<CityPopulation> cities = new ArrayList<>();
+        for (Document stats : mongoTemplate.find(query, Document.class, COLLECTION)) {
+            cities.add(new CityPopulation(stats.getString("_id"), ((Number) stats.get("population")).longValue()));
+        }
+        return cities;
+    }
+
+    @Override
+    public List<OldestPersonInCity> getOldestPersonInEachCity() {
+        Query query = readRouting.analytics(new Query(Criteria.where("oldestPerson").ne(null)).with(Sort.by(Sort.Direction.ASC, "_id")));
+        query.fields().include("oldestPerson._id", "oldestPerson.firstName", "oldestPerson.lastName", "oldestPerson.age");
+        List<OldestPersonInCity> cities = new ArrayList<>();
+        for (Document stats : mongoTemplate.find(query, Document.class, COLLECTION)) {
+            Document person = stats.get("oldestPerson", Document.class);
+            Object personId = person.get("_id");
+            // Imported documents may hold the age as an Int64 or a Double
+            Number age = (Number) person.get("age");
+            cities.add(new OldestPersonInCity(stats.getString("_id"), personId == null ? null : personId.toString(),
+                    person.getString("firstName"), person.getString("lastName"), age == null ? null : age.intValue()));
+        }
+        return cities;
+    }
+
+    private Document toDocument(Person person) {
+        Document document = new Document();
+        mongoTemplate.getConverter().write(person, document);
+        return document;
+    }
+
+    // Same shape as the rebuild pipeline : only the fields the report shows, and the city
+    private static Document oldestPerson(Document person, String city) {
+        return new Document("_id", person.get("_id"))
+                .append("firstName", person.get("firstName"))
+                .append("lastName", person.get("lastName"))
+                .append("age", person.get("age"))
+                .append("city", city);
+    }
+
+    // A person with two addresses in the same city counts twice, like in the $unwind based pipeline,
+    // an address without a city isn't counted ("$addresses.city" skips it too)
+    private static Map<String, Integer> countByCity(Person person) {
+        Map<String, Integer> counts = new HashMap<>();
+        if (person.getAddresses() != null) {
+            for (Address address : person.getAddresses()) {
+                if (address != null && address.getCity() != null) {
+                    counts.merge(address.getCity(), 1, Integer::sum);
+                }
+            }
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.proj.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    @Test
+    void concurrentCallsWithTheSameKeyShareOneExecution() throws Exception {
+        SingleFlight flight = new SingleFlight("test", 5000, new SimpleMeterRegistry());
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> flight.execute("key", () -> {
+            executions.incrementAndGet();
+            leaderStarted.countDown();
+            await(release);
+            return "result";
+        }));
+        assertThat(leaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<String> follower = CompletableFuture.supplyAsync(() -> flight.execute("key", () -> {
+            executions.incrementAndGet();
+            return "other";
+        }));
+        while (flight.stats().get("followers").equals(0L)) {
+            Thread.onSpinWait();
+        }
+        release.countDown();
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+        assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo("result");
+        assertThat(executions).hasValue(1);
+        assertThat(flight.stats()).containsEntry("fanIn", 2.0).containsEntry("inFlight", 0);
+    }
+
+    @Test
+    void followerStopsWaitingAfterTheTimeoutAndNextCallRunsAgain() throws Exception {
+        SingleFlight flight = new SingleFlight("test", 50, new SimpleMeterRegistry());
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> flight.execute("key", () -> {
+            leaderStarted.countDown();
+            await(release);
+            return "slow";
+        }));
+        assertThat(leaderStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> flight.execute("key", () -> "other")).isInstanceOf(RejectedExecutionException.class);
+        release.countDown();
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("slow");
+        assertThat(flight.execute("key", () -> "fresh")).isEqualTo("fresh");
+        assertThat(flight.stats()).containsEntry("timeouts", 1L);
+    }
+
+    @Test
+    void leaderExceptionIsRethrownAndNotKept() {
+        SingleFlight flight = new SingleFlight("test", 5000, new SimpleMeterRegistry());
+
+        assertThatThrownBy(() -> flight.execute("key", () -> {
+            throw new RuntimeException("Person Not Found");
+        })).hasMessage("Person Not Found");
+        assertThat(flight.execute("key", () -> "found")).isEqualTo("found");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
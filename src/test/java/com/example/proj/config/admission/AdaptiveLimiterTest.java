@@ -0,0 +1,81 @@
+package com.example.proj.config.admission;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AdaptiveLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.SECONDS.toNanos(2);
+
+    @Test
+    void rejectsWithQueueFullOnceTheLimitAndTheQueueAreTaken() {
+        AdaptiveLimiter limiter = limiter(2, 0);
+        limiter.acquire();
+        limiter.acquire();
+
+        assertThatThrownBy(limiter::acquire)
+                .isInstanceOfSatisfying(AdmissionRejectedException.class, e -> {
+                    assertThat(e.isQueueFull()).isTrue();
+                    assertThat(e.getRetryAfterSeconds()).isGreaterThanOrEqualTo(1);
+                });
+
+        limiter.release(FAST, false);
+        limiter.acquire();
+        assertThat(limiter.getInFlight()).isEqualTo(2);
+    }
+
+    @Test
+    void rejectsWithTimeoutWhenNoSlotFreesUpWhileWaiting() {
+        AdaptiveLimiter limiter = limiter(1, 1);
+        limiter.acquire();
+
+        assertThatThrownBy(limiter::acquire)
+                .isInstanceOfSatisfying(AdmissionRejectedException.class, e -> assertThat(e.isQueueFull()).isFalse());
+        assertThat(limiter.getWaiting()).isZero();
+    }
+
+    @Test
+    void growsWhileFastAndBusyAndShrinksOnSlowRequests() {
+        AdaptiveLimiter limiter = limiter(4, 0);
+        for (int i = 0; i < 40; i++) {
+            fill(limiter);
+            limiter.release(FAST, false);
+            releaseAll(limiter);
+        }
+        double grown = limiter.getLimit();
+        assertThat(grown).isGreaterThan(4);
+
+        limiter.acquire();
+        limiter.release(SLOW, false);
+        assertThat(limiter.getLimit()).isEqualTo(grown * 0.9);
+
+        // A second slow request of the same slow period doesn't shrink it again
+        limiter.acquire();
+        limiter.release(SLOW, false);
+        assertThat(limiter.getLimit()).isEqualTo(grown * 0.9);
+    }
+
+    private static AdaptiveLimiter limiter(int limit, int queueSize) {
+        return new AdaptiveLimiter("test", limit, 1, 16, queueSize, Duration.ofMillis(50), Duration.ofSeconds(1),
+                new SimpleMeterRegistry());
+    }
+
+    private static void fill(AdaptiveLimiter limiter) {
+        while (limiter.getInFlight() < (int) limiter.getLimit()) {
+            limiter.acquire();
+        }
+    }
+
+    private static void releaseAll(AdaptiveLimiter limiter) {
+        while (limiter.getInFlight() > 0) {
+            limiter.release(0, false);
+        }
+    }
+}
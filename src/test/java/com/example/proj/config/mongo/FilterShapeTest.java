@@ -0,0 +1,36 @@
+package com.example.proj.config.mongo;
+
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FilterShapeTest {
+
+    @Test
+    void valuesAreRedactedButFieldsAndOperatorsKept() {
+        BsonDocument filter = BsonDocument.parse(
+                "{'firstNameLower': {'$regex': '^jo'}, 'age': {'$gt': 20, '$lt': 40}, 'addresses.city': 'Paris'}");
+
+        assertThat(FilterShape.of(filter)).isEqualTo(
+                "{\"firstNameLower\": {\"$regex\": \"?\"}, \"age\": {\"$gt\": \"?\", \"$lt\": \"?\"}, \"addresses.city\": \"?\"}");
+    }
+
+    @Test
+    void valueListsCollapseAndDocumentListsKeepTheirShape() {
+        BsonDocument filter = BsonDocument.parse(
+                "{'$and': [{'age': 42}, {'_id': {'$in': [1, 2, 3]}}]}");
+
+        assertThat(FilterShape.of(filter)).isEqualTo(
+                "{\"$and\": [{\"age\": \"?\"}, {\"_id\": {\"$in\": [\"?\"]}}]}");
+    }
+
+    @Test
+    void slowQueryDescriptionOnlyContainsTheShape() {
+        BsonDocument find = BsonDocument.parse(
+                "{'find': 'person', 'filter': {'firstName': 'John'}, 'sort': {'age': 1}, 'limit': 6}");
+
+        assertThat(SlowQueryCommandListener.describe("find", find))
+                .isEqualTo("find person filter={\"firstName\": \"?\"} sort={\"age\": 1}");
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.proj.config.mongo;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MongoConcurrencyGuardTest {
+
+    @Test
+    void aStreamKeepsItsPermitUntilItIsClosed() throws Throwable {
+        MongoTemplate target = mock(MongoTemplate.class);
+        when(target.stream(any(Query.class), eq(String.class))).thenAnswer(invocation -> Stream.of("a", "b"));
+        when(target.count(any(Query.class), eq("person"))).thenReturn(2L);
+        MongoTemplate guarded = guarded(target, 1);
+
+        Stream<String> stream = guarded.stream(new Query(), String.class);
+        // Same thread while iterating : no second permit needed
+        assertThat(guarded.count(new Query(), "person")).isEqualTo(2L);
+        assertThatThrownBy(() -> runOnOtherThread(() -> guarded.count(new Query(), "person")))
+                .isInstanceOf(TransientDataAccessResourceException.class);
+
+        stream.close();
+        runOnOtherThread(() -> guarded.count(new Query(), "person"));
+    }
+
+    private static MongoTemplate guarded(MongoTemplate target, int permits) {
+        AspectJProxyFactory factory = new AspectJProxyFactory(target);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new MongoConcurrencyGuard(permits, Duration.ofMillis(50)));
+        return factory.getProxy();
+    }
+
+    private static void runOnOtherThread(Runnable call) throws Throwable {
+        Throwable[] failure = new Throwable[1];
+        Thread thread = new Thread(() -> {
+            try {
+                call.run();
+            } catch (Throwable e) {
+                failure[0] = e;
+            }
+        });
+        thread.start();
+        thread.join();
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+}
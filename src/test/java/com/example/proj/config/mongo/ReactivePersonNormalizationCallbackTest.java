@@ -0,0 +1,64 @@
+package com.example.proj.config.mongo;
+
+import com.example.proj.model.Person;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import com.mongodb.reactivestreams.client.MongoDatabase;
+import com.mongodb.client.result.InsertOneResult;
+import org.bson.BsonObjectId;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import reactor.core.publisher.Mono;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ReactivePersonNormalizationCallbackTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reactiveTemplateWritesTheLowercaseFirstName() {
+        MongoCollection<Document> collection = mock(MongoCollection.class, RETURNS_DEEP_STUBS);
+        when(collection.withWriteConcern(any())).thenReturn(collection);
+        // Like the driver : the generated _id is added to the inserted document
+        when(collection.insertOne(any(Document.class))).thenAnswer(invocation -> {
+            BsonObjectId id = new BsonObjectId();
+            invocation.getArgument(0, Document.class).put("_id", id.getValue());
+            return Mono.just(InsertOneResult.acknowledged(id));
+        });
+        MongoDatabase database = mock(MongoDatabase.class);
+        when(database.getCollection(anyString(), any(Class.class))).thenReturn(collection);
+        when(database.getCollection(anyString())).thenReturn(collection);
+        ReactiveMongoDatabaseFactory factory = mock(ReactiveMongoDatabaseFactory.class);
+        when(factory.getMongoDatabase()).thenReturn(Mono.just(database));
+        when(factory.getExceptionTranslator()).thenReturn(e -> null);
+
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        MappingMongoConverter converter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, mappingContext);
+        converter.afterPropertiesSet();
+        ReactiveMongoTemplate template = new ReactiveMongoTemplate(factory, converter);
+        StaticApplicationContext context = new StaticApplicationContext();
+        context.registerSingleton("reactivePersonNormalizationCallback", ReactivePersonNormalizationCallback.class);
+        context.refresh();
+        template.setApplicationContext(context);
+
+        Person person = new Person();
+        person.setFirstName("Émile");
+        template.insert(person).block();
+
+        ArgumentCaptor<Document> written = ArgumentCaptor.forClass(Document.class);
+        verify(collection).insertOne(written.capture());
+        assertThat(written.getValue().getString("firstNameLower")).isEqualTo("émile");
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.proj.controller.person;
+
+import com.example.proj.dto.PersonSlice;
+import com.example.proj.service.feed.PersonFeedService;
+import com.example.proj.service.person.PersonBulkDeleteService;
+import com.example.proj.service.person.PersonIngestService;
+import com.example.proj.service.person.PersonService;
+import com.example.proj.service.stats.CityStatsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class PersonControllerKeysetTest {
+
+    private static final int MAX_PAGE_SIZE = 100;
+
+    private PersonService personService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        personService = mock(PersonService.class);
+        PersonController controller = new PersonController(personService, mock(PersonIngestService.class),
+                mock(PersonBulkDeleteService.class), mock(CityStatsService.class), mock(PersonFeedService.class),
+                new ObjectMapper(), Duration.ofMinutes(30), MAX_PAGE_SIZE);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @Test
+    void rejectsSizeBelowOne() throws Exception {
+        mockMvc.perform(get("/api/v1/person/search/keyset").param("size", "0")).andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/person/search/keyset").param("size", "-5")).andExpect(status().isBadRequest());
+
+        verifyNoInteractions(personService);
+    }
+
+    @Test
+    void capsSizeToTheConfiguredMaximum() throws Exception {
+        when(personService.searchPersonKeyset(any(), any(), any(), any(), anyString(), isNull(), anyInt(), anyString()))
+                .thenReturn(new PersonSlice(List.of(), false, null, null, null));
+
+        mockMvc.perform(get("/api/v1/person/search/keyset").param("size", "100000")).andExpect(status().isOk());
+
+        verify(personService).searchPersonKeyset(any(), any(), any(), any(), eq("id"), isNull(), eq(MAX_PAGE_SIZE), eq("none"));
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.proj.service.person;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeysetTokenTest {
+
+    @Test
+    void idTokenRoundTrips() {
+        KeysetToken token = KeysetToken.decode(KeysetToken.byId("64b7f0c2a1e4b23c9d1f0a11").encode());
+
+        assertThat(token.getSortBy()).isEqualTo(KeysetToken.SORT_BY_ID);
+        assertThat(token.getPersonId()).isEqualTo("64b7f0c2a1e4b23c9d1f0a11");
+        assertThat(token.getAge()).isNull();
+    }
+
+    @Test
+    void ageTokenRoundTripsWithAndWithoutAge() {
+        KeysetToken withAge = KeysetToken.decode(KeysetToken.byAge(42, "abc").encode());
+        KeysetToken withoutAge = KeysetToken.decode(KeysetToken.byAge(null, "abc").encode());
+
+        assertThat(withAge.getAge()).isEqualTo(42);
+        assertThat(withAge.getPersonId()).isEqualTo("abc");
+        assertThat(withoutAge.getAge()).isNull();
+        assertThat(withoutAge.getPersonId()).isEqualTo("abc");
+    }
+
+    @Test
+    void rejectsTamperedToken() {
+        assertThatThrownBy(() -> KeysetToken.decode("not a token"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeysetToken.decode("YWdlOng6YWJj")) // "age:x:abc"
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
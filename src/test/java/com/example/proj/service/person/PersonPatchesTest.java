@@ -0,0 +1,55 @@
+package com.example.proj.service.person;
+
+import com.example.proj.dto.PersonPatch;
+import com.example.proj.model.Address;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PersonPatchesTest {
+
+    @Test
+    void onlyTouchesTheFieldsGivenAndBumpsTheVersion() {
+        PersonPatch patch = new PersonPatch();
+        patch.setFirstName("Ana");
+        patch.setIncAge(1);
+        patch.setAddHobbies(List.of("chess"));
+
+        Document update = PersonPatches.toUpdate(patch).getUpdateObject();
+
+        assertThat(update.get("$set", Document.class)).containsOnlyKeys("firstName", "firstNameLower")
+                .containsEntry("firstNameLower", "ana");
+        assertThat(update.get("$inc", Document.class)).containsEntry("age", 1).containsEntry("version", 1);
+        assertThat(update).containsOnlyKeys("$set", "$inc", "$push");
+    }
+
+    @Test
+    void removesAddressesMatchingTheFieldsGiven() {
+        PersonPatch patch = new PersonPatch();
+        patch.setRemoveAddresses(List.of(new Address(null, null, "Paris"), new Address("1 rue", null, null)));
+
+        Document pull = PersonPatches.toUpdate(patch).getUpdateObject().get("$pull", Document.class);
+
+        assertThat(pull.get("addresses")).isEqualTo(new Document("$or",
+                List.of(new Document("city", "Paris"), new Document("address1", "1 rue"))));
+    }
+
+    @Test
+    void rejectsEmptyAndConflictingPatches() {
+        assertThatThrownBy(() -> PersonPatches.toUpdate(new PersonPatch()))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        PersonPatch ageTwice = new PersonPatch();
+        ageTwice.setAge(30);
+        ageTwice.setIncAge(1);
+        assertThatThrownBy(() -> PersonPatches.toUpdate(ageTwice)).isInstanceOf(IllegalArgumentException.class);
+
+        PersonPatch everyAddress = new PersonPatch();
+        everyAddress.setRemoveAddresses(List.of(new Address()));
+        assertThatThrownBy(() -> PersonPatches.toUpdate(everyAddress)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
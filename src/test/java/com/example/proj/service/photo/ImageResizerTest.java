@@ -0,0 +1,39 @@
+package com.example.proj.service.photo;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImageResizerTest {
+
+    @Test
+    void refusesSourcesAboveThePixelLimitBeforeDecoding() throws IOException {
+        byte[] png = png(400, 300);
+
+        assertThatThrownBy(() -> ImageResizer.read(new ByteArrayInputStream(png), 400 * 300 - 1, 100, 0))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("400x300");
+    }
+
+    @Test
+    void subsamplesSourcesMuchBiggerThanTheTarget() throws IOException {
+        byte[] png = png(400, 300);
+
+        BufferedImage image = ImageResizer.read(new ByteArrayInputStream(png), 400 * 300, 50, 0);
+        assertThat(image.getWidth()).isEqualTo(100);
+        assertThat(ImageResizer.read(new ByteArrayInputStream(png), 400 * 300, 0, 0).getWidth()).isEqualTo(400);
+    }
+
+    private static byte[] png(int width, int height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", out);
+        return out.toByteArray();
+    }
+}